@@ -0,0 +1,133 @@
+package udacityscholarship.rada.raul.newsapp;
+
+import android.app.Activity;
+import android.app.Instrumentation;
+import android.content.Intent;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+import android.widget.ListView;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+/**
+ * Scroll benchmark, which will execute on an Android device.
+ * Flings the list of {@link Article} objects from top to bottom and reports the bind, inflation
+ * and frame timings recorded by {@link ScrollPerformanceMonitor} for feeds of several sizes.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ScrollBenchmarkTest {
+
+    private static final String LOG_TAG = ScrollBenchmarkTest.class.getSimpleName();
+
+    /**
+     * duration of each programmatic fling
+     */
+    private static final int FLING_DURATION_MILLIS = 500;
+
+    /**
+     * upper bound on the number of flings, in case the list never reaches its end
+     */
+    private static final int MAX_FLINGS = 500;
+
+    private Instrumentation instrumentation;
+    private Activity activity;
+    private ListView listView;
+
+    @Before
+    public void launchActivity() {
+        instrumentation = InstrumentationRegistry.getInstrumentation();
+        Intent intent = new Intent(instrumentation.getTargetContext(), NewsActivity.class);
+        intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+        activity = instrumentation.startActivitySync(intent);
+        listView = (ListView) activity.findViewById(R.id.articles_list_view);
+    }
+
+    @After
+    public void finishActivity() {
+        activity.finish();
+    }
+
+    @Test
+    public void scroll50Articles() {
+        runScrollBenchmark(50);
+    }
+
+    @Test
+    public void scroll200Articles() {
+        runScrollBenchmark(200);
+    }
+
+    @Test
+    public void scroll1000Articles() {
+        runScrollBenchmark(1000);
+    }
+
+    /**
+     * Flings through a feed of the given size and reports what {@link ScrollPerformanceMonitor}
+     * recorded.
+     */
+    private void runScrollBenchmark(final int articleCount) {
+        final ScrollPerformanceMonitor monitor = new ScrollPerformanceMonitor(
+                activity.getWindowManager().getDefaultDisplay().getRefreshRate());
+        instrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                ArticleAdapter adapter = new ArticleAdapter(activity, createArticles(articleCount));
+                adapter.setPerformanceMonitor(monitor);
+                listView.setAdapter(adapter);
+                listView.setOnScrollListener(monitor);
+            }
+        });
+        instrumentation.waitForIdleSync();
+
+        for (int i = 0; i < MAX_FLINGS && listView.getLastVisiblePosition() < articleCount - 1;
+             i++) {
+            instrumentation.runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    listView.smoothScrollBy(listView.getHeight() * 2, FLING_DURATION_MILLIS);
+                }
+            });
+            SystemClock.sleep(FLING_DURATION_MILLIS + 50);
+        }
+        instrumentation.waitForIdleSync();
+
+        ScrollPerformanceMonitor.Report report = monitor.getReport();
+        Log.i(LOG_TAG, articleCount + " articles: " + report);
+        Bundle results = new Bundle();
+        results.putString(LOG_TAG + "." + articleCount, report.toString());
+        instrumentation.sendStatus(0, results);
+
+        assertEquals(articleCount - 1, listView.getLastVisiblePosition());
+        assertTrue(report.frameCount > 0);
+        // rows must be recycled: inflations are bounded by the rows on screen, not the feed size
+        assertTrue(report.inflateCount <= listView.getChildCount() * 2);
+        assertEquals(report.bindCount, report.inflateCount + report.reuseCount);
+    }
+
+    /**
+     * @return the given number of {@link Article} objects with realistic field lengths
+     */
+    private static ArrayList<Article> createArticles(int articleCount) {
+        ArrayList<Article> articles = new ArrayList<Article>(articleCount);
+        for (int i = 0; i < articleCount; i++) {
+            articles.add(new Article(
+                    "Benchmark article " + i + ": a headline long enough to wrap onto two lines",
+                    "Football",
+                    i % 3 == 0 ? "" : "First Author, Second Author",
+                    "20 Jun 2018",
+                    "https://www.theguardian.com/football/benchmark-" + i));
+        }
+        return articles;
+    }
+}
@@ -0,0 +1,337 @@
+package udacityscholarship.rada.raul.newsapp;
+
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client-side token bucket guarding the Guardian API key.
+ * Every request must take a token by calling {@link #acquire()} before it goes on the wire. The
+ * bucket refills at the per-second limit of the key, while the per-minute and per-day limits are
+ * tracked from the X-RateLimit response headers reported through {@link #onResponse}.
+ * Class is thread-safe; all state is guarded by the instance monitor.
+ */
+public class ApiRateLimiter {
+
+    /**
+     * Guardian response header holding the daily call limit of the key
+     */
+    public static final String HEADER_LIMIT_DAY = "X-RateLimit-Limit-day";
+
+    /**
+     * Guardian response header holding the calls left for the current day
+     */
+    public static final String HEADER_REMAINING_DAY = "X-RateLimit-Remaining-day";
+
+    /**
+     * Guardian response header holding the calls left for the current minute
+     */
+    public static final String HEADER_REMAINING_MINUTE = "X-RateLimit-Remaining-minute";
+
+    /**
+     * standard header a server may send along with a 429 response
+     */
+    public static final String HEADER_RETRY_AFTER = "Retry-After";
+
+    /**
+     * calls per second allowed for a Guardian developer key
+     */
+    private static final double DEFAULT_PERMITS_PER_SECOND = 1.0;
+
+    /**
+     * maximum number of tokens which can be saved up for a burst of requests
+     */
+    private static final int DEFAULT_BURST_CAPACITY = 1;
+
+    /**
+     * calls per day allowed for a Guardian developer key, used until the server reports its own
+     */
+    private static final int DEFAULT_DAILY_LIMIT = 500;
+
+    /**
+     * shortest pause applied after the server answered with 429 Too Many Requests
+     */
+    private static final long MIN_BACKOFF_MILLIS = 1000;
+
+    /**
+     * longest pause applied after repeated 429 Too Many Requests answers
+     */
+    private static final long MAX_BACKOFF_MILLIS = 60000;
+
+    /**
+     * number of milliseconds in a minute, used for the per-minute window
+     */
+    private static final long MINUTE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    /**
+     * number of milliseconds in a day, used for the daily quota reset
+     */
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    /**
+     * limiter shared by every request made with the Guardian API key of the app
+     */
+    private static ApiRateLimiter instance;
+
+    /**
+     * tokens added to the bucket per nanosecond
+     */
+    private final double permitsPerNano;
+
+    /**
+     * maximum number of tokens held by the bucket
+     */
+    private final int burstCapacity;
+
+    /**
+     * tokens currently available in the bucket
+     */
+    private double tokens;
+
+    /**
+     * System.nanoTime() value of the last refill of the bucket
+     */
+    private long lastRefillNanos;
+
+    /**
+     * number of calls allowed per day
+     */
+    private int dailyLimit;
+
+    /**
+     * number of calls left for the current day, as last reported by the server and decremented
+     * locally for every token handed out since
+     */
+    private int dailyRemaining;
+
+    /**
+     * index of the UTC day to which dailyRemaining refers
+     */
+    private long quotaDay;
+
+    /**
+     * System.nanoTime() value before which no token is handed out
+     */
+    private long blockedUntilNanos;
+
+    /**
+     * number of 429 answers received in a row, used for the exponential back-off
+     */
+    private int consecutiveRejections;
+
+    /**
+     * number of callers waiting in {@link #acquire(int)}, by priority
+     */
+    private final TreeMap<Integer, Integer> waitingPriorities = new TreeMap<Integer, Integer>();
+
+    /**
+     * {@link ApiRateLimiter} constructor
+     *
+     * @param permitsPerSecond number of requests allowed per second
+     * @param burstCapacity    maximum number of requests which may be sent back to back
+     * @param dailyLimit       number of requests allowed per day
+     */
+    public ApiRateLimiter(double permitsPerSecond, int burstCapacity, int dailyLimit) {
+        if (permitsPerSecond <= 0 || burstCapacity < 1 || dailyLimit < 1) {
+            throw new IllegalArgumentException("Rate limits must be positive");
+        }
+        this.permitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.burstCapacity = burstCapacity;
+        this.tokens = burstCapacity;
+        this.lastRefillNanos = System.nanoTime();
+        this.dailyLimit = dailyLimit;
+        this.dailyRemaining = dailyLimit;
+        this.quotaDay = currentDay();
+        this.blockedUntilNanos = lastRefillNanos;
+    }
+
+    /**
+     * @return the {@link ApiRateLimiter} shared by all requests made with the app API key
+     */
+    public static synchronized ApiRateLimiter getInstance() {
+        if (instance == null) {
+            instance = new ApiRateLimiter(DEFAULT_PERMITS_PER_SECOND, DEFAULT_BURST_CAPACITY,
+                    DEFAULT_DAILY_LIMIT);
+        }
+        return instance;
+    }
+
+    /**
+     * Blocks until a request may be sent without exceeding the limits of the API key.
+     *
+     * @return true if a token was taken, false if the daily quota is exhausted
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    public boolean acquire() throws InterruptedException {
+        return acquire(0);
+    }
+
+    /**
+     * Blocks until a request may be sent without exceeding the limits of the API key. While
+     * callers with a more urgent priority are waiting, tokens go to them first.
+     *
+     * @param priority urgency of the request, lower values first
+     * @return true if a token was taken, false if the daily quota is exhausted
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    public synchronized boolean acquire(int priority) throws InterruptedException {
+        addWaiter(priority);
+        try {
+            while (true) {
+                long now = System.nanoTime();
+                resetDailyQuotaIfNeeded();
+                if (dailyRemaining <= 0) {
+                    return false;
+                }
+                refill(now);
+
+                if (waitingPriorities.firstKey() < priority) {
+                    // a more urgent caller takes the next token and wakes us up afterwards
+                    wait();
+                    continue;
+                }
+                long waitNanos;
+                if (now < blockedUntilNanos) {
+                    waitNanos = blockedUntilNanos - now;
+                } else if (tokens >= 1) {
+                    tokens -= 1;
+                    dailyRemaining--;
+                    return true;
+                } else {
+                    waitNanos = (long) Math.ceil((1 - tokens) / permitsPerNano);
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, waitNanos);
+            }
+        } finally {
+            removeWaiter(priority);
+            notifyAll();
+        }
+    }
+
+    /**
+     * Updates the limiter with the outcome of a request sent after {@link #acquire()}.
+     *
+     * @param responseCode     HTTP status code of the response
+     * @param limitDay         value of the {@link #HEADER_LIMIT_DAY} header, or null
+     * @param remainingDay     value of the {@link #HEADER_REMAINING_DAY} header, or null
+     * @param remainingMinute  value of the {@link #HEADER_REMAINING_MINUTE} header, or null
+     * @param retryAfter       value of the {@link #HEADER_RETRY_AFTER} header, or null
+     */
+    public synchronized void onResponse(int responseCode, String limitDay, String remainingDay,
+                                        String remainingMinute, String retryAfter) {
+        int reportedLimitDay = parseHeader(limitDay);
+        if (reportedLimitDay > 0) {
+            dailyLimit = reportedLimitDay;
+        }
+        int reportedRemainingDay = parseHeader(remainingDay);
+        if (reportedRemainingDay >= 0) {
+            quotaDay = currentDay();
+            dailyRemaining = reportedRemainingDay;
+        }
+
+        long now = System.nanoTime();
+        if (responseCode == 429) {
+            // back off exponentially, unless the server told us how long to wait
+            long backoffMillis = Math.min(MAX_BACKOFF_MILLIS,
+                    MIN_BACKOFF_MILLIS << Math.min(consecutiveRejections, 6));
+            int retryAfterSeconds = parseHeader(retryAfter);
+            if (retryAfterSeconds >= 0) {
+                backoffMillis = Math.max(backoffMillis, TimeUnit.SECONDS.toMillis(retryAfterSeconds));
+            }
+            consecutiveRejections++;
+            tokens = 0;
+            blockUntil(now + TimeUnit.MILLISECONDS.toNanos(backoffMillis));
+        } else {
+            consecutiveRejections = 0;
+            if (parseHeader(remainingMinute) == 0) {
+                // per-minute quota used up, wait for the next minute window
+                long millisToNextMinute = MINUTE_MILLIS - System.currentTimeMillis() % MINUTE_MILLIS;
+                blockUntil(now + TimeUnit.MILLISECONDS.toNanos(millisToNextMinute));
+            }
+        }
+        notifyAll();
+    }
+
+    /**
+     * @return number of requests which can still be sent today
+     */
+    public synchronized int getRemainingDailyQuota() {
+        resetDailyQuotaIfNeeded();
+        return dailyRemaining;
+    }
+
+    /**
+     * @return number of requests allowed per day for the API key
+     */
+    public synchronized int getDailyLimit() {
+        return dailyLimit;
+    }
+
+    /**
+     * Counts a caller of {@link #acquire(int)} waiting with the given priority.
+     */
+    private void addWaiter(int priority) {
+        Integer count = waitingPriorities.get(priority);
+        waitingPriorities.put(priority, count == null ? 1 : count + 1);
+    }
+
+    /**
+     * Forgets a caller of {@link #acquire(int)} which got its token or gave up.
+     */
+    private void removeWaiter(int priority) {
+        int count = waitingPriorities.get(priority);
+        if (count == 1) {
+            waitingPriorities.remove(priority);
+        } else {
+            waitingPriorities.put(priority, count - 1);
+        }
+    }
+
+    /**
+     * Adds the tokens earned since the last refill, without exceeding the burst capacity.
+     */
+    private void refill(long now) {
+        tokens = Math.min(burstCapacity, tokens + (now - lastRefillNanos) * permitsPerNano);
+        lastRefillNanos = now;
+    }
+
+    /**
+     * Prevents tokens from being handed out before the given System.nanoTime() value.
+     */
+    private void blockUntil(long nanos) {
+        if (nanos - blockedUntilNanos > 0) {
+            blockedUntilNanos = nanos;
+        }
+    }
+
+    /**
+     * Restores the full daily quota once the UTC day of the last known quota has passed.
+     */
+    private void resetDailyQuotaIfNeeded() {
+        long today = currentDay();
+        if (today != quotaDay) {
+            quotaDay = today;
+            dailyRemaining = dailyLimit;
+        }
+    }
+
+    /**
+     * @return index of the current UTC day
+     */
+    private static long currentDay() {
+        return System.currentTimeMillis() / DAY_MILLIS;
+    }
+
+    /**
+     * @return the non-negative integer value of a header, or -1 if it is missing or malformed
+     */
+    private static int parseHeader(String value) {
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Math.max(-1, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
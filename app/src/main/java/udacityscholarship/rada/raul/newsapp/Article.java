@@ -30,6 +30,11 @@ public class Article {
      */
     private String articleUrl;
 
+    /**
+     * {@link Article} publishing time, in milliseconds since the epoch, or 0 if unknown
+     */
+    private long articlePublicationTime;
+
     /**
      * {@link Article} constructor
      *
@@ -40,11 +45,28 @@ public class Article {
      */
     public Article(String articleTitle, String articleSection, String articleAuthor,
                    String articleDate, String articleUrl) {
+        this(articleTitle, articleSection, articleAuthor, articleDate, articleUrl, 0);
+    }
+
+    /**
+     * {@link Article} constructor
+     *
+     * @param articleTitle           title of the {@link Article}
+     * @param articleSection         section in which the {@link Article} is published
+     * @param articleAuthor          author of the {@link Article}
+     * @param articleDate            publishing date of the {@link Article}
+     * @param articleUrl             URL of the {@link Article}
+     * @param articlePublicationTime publishing time of the {@link Article}, in milliseconds since
+     *                               the epoch, or 0 if unknown
+     */
+    public Article(String articleTitle, String articleSection, String articleAuthor,
+                   String articleDate, String articleUrl, long articlePublicationTime) {
         this.articleTitle = articleTitle;
         this.articleSection = articleSection;
         this.articleAuthor = articleAuthor;
         this.articleDate = articleDate;
         this.articleUrl = articleUrl;
+        this.articlePublicationTime = articlePublicationTime;
     }
 
     /**
@@ -81,4 +103,11 @@ public class Article {
     public String getArticleUrl() {
         return articleUrl;
     }
+
+    /**
+     * @return {@link Article} publishing time, in milliseconds since the epoch, or 0 if unknown
+     */
+    public long getArticlePublicationTime() {
+        return articlePublicationTime;
+    }
 }
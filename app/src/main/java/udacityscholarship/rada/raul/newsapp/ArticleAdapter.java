@@ -16,8 +16,23 @@ import java.util.ArrayList;
  */
 public class ArticleAdapter extends ArrayAdapter<Article> {
 
+    /**
+     * opacity of the list items of {@link Article} objects already opened by the user
+     */
+    public static final float READ_ARTICLE_ALPHA = 0.5f;
+
     private Context context;
 
+    /**
+     * optional history of the {@link Article} objects opened by the user, which are dimmed
+     */
+    private ReadHistory readHistory;
+
+    /**
+     * optional monitor recording the duration of each call to getView
+     */
+    private ScrollPerformanceMonitor performanceMonitor;
+
     /**
      * constructor of {@link ArticleAdapter} objects
      *
@@ -39,6 +54,8 @@ public class ArticleAdapter extends ArrayAdapter<Article> {
      */
     @Override
     public View getView(int position, View convertView, ViewGroup parent) {
+        long bindStartNanos = System.nanoTime();
+        boolean inflated = convertView == null;
 
         // create {@link ViewHolder} object storing each of the component views of list_item.xml
         ViewHolder holder;
@@ -89,9 +106,32 @@ public class ArticleAdapter extends ArrayAdapter<Article> {
                     currentArticle.getArticleDate()));
         } else holder.listItemDateTextView.setVisibility(View.GONE);
 
+        // dim the Article if the user has already opened it
+        boolean read = readHistory != null && readHistory.isRead(currentArticle.getArticleUrl());
+        convertView.setAlpha(read ? READ_ARTICLE_ALPHA : 1f);
+
+        if (performanceMonitor != null) {
+            performanceMonitor.recordBind(System.nanoTime() - bindStartNanos, inflated);
+        }
         return convertView;
     }
 
+    /**
+     * @param readHistory history of the {@link Article} objects opened by the user, which are
+     *                    dimmed, or null to show every {@link Article} as unread
+     */
+    public void setReadHistory(ReadHistory readHistory) {
+        this.readHistory = readHistory;
+    }
+
+    /**
+     * @param performanceMonitor records the duration of each call to getView, or null to stop
+     *                           recording
+     */
+    public void setPerformanceMonitor(ScrollPerformanceMonitor performanceMonitor) {
+        this.performanceMonitor = performanceMonitor;
+    }
+
     /**
      * Class of {@link ViewHolder} objects used to store each of the component views of
      * list_item.xml inside the tag field of the Layout, so you can immediately access them without
@@ -0,0 +1,161 @@
+package udacityscholarship.rada.raul.newsapp;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * Helper class containing only static methods for building {@link Article} objects from a
+ * Guardian API response.
+ * Depends on org.json only, so it is shared by the app and the plain-JVM archive ingester.
+ * Class declared as final in order to prevent inheritance for security reasons
+ */
+public final class ArticleJsonParser {
+
+    /**
+     * Private class contructor in order to prevent creation of objects. Class is relevant only
+     * for its static methods, which do not need class instantiations in order to be used.
+     */
+    private ArticleJsonParser() {
+    }
+
+    /**
+     * Static method which parses the publication date returned by the Guardian API
+     * @param dateObject String date in UTC, e.g. 2018-06-20T18:30:00Z
+     * @return parsed date, or null if it cannot be parsed
+     */
+    private static Date parseDate(String dateObject) {
+        SimpleDateFormat apiDateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
+        apiDateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+        try {
+            return apiDateFormat.parse(dateObject);
+        } catch (ParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Static method which formats the date displayed to the user
+     * @param date1 date which must be formatted
+     * @return formmated date
+     */
+    private static String formatDate(Date date1) {
+        SimpleDateFormat dateFormat = new SimpleDateFormat("dd LLL yyyy");
+
+        return dateFormat.format(date1).toString();
+    }
+
+    /**
+     * Return the page of {@link Article} objects that has been built up from
+     * parsing the given JSON response.
+     *
+     * @param articleJSON from which the {@link Article} objects data will be extracted
+     * @param token       checked before each article; parsing stops once it is cancelled
+     * @return page of {@link Article} objects, or null if parsing was cancelled
+     * @throws JSONException if the response does not have the expected structure
+     */
+    public static ArticlePage parsePage(String articleJSON, CancellationToken token)
+            throws JSONException {
+        //Create empty ArrayList<Article> which will contain the relevant Articles
+        ArrayList<Article> articles = new ArrayList<Article>();
+
+        // Create a JSONObject from the JSON response string
+        JSONObject rootJsonResponse = new JSONObject(articleJSON);
+
+        // Get JSONObject containing info about all Articles
+        JSONObject baseJsonResponse = rootJsonResponse.getJSONObject("response");
+
+        // Extract the JSONArray associated with the key called "results",
+        // which represents a list of articles.
+        JSONArray articlesArray = baseJsonResponse.getJSONArray("results");
+
+        // for each article in articlesArray, create an {@link Article} object and add it to
+        // the articles ArrayList
+        for (int i = 0; i < articlesArray.length(); i++) {
+
+            // stop at the article boundary if the request has been cancelled
+            if (token.isCancelled()) {
+                return null;
+            }
+
+            // get a single Article at position i within the list of Articles
+            JSONObject currentArticle = articlesArray.getJSONObject(i);
+
+            // extract the value for the key called "webTitle"
+            String articleTitle = currentArticle.getString("webTitle");
+
+            // extract the value for the key called "sectionName"
+            String articleSection = currentArticle.getString("sectionName");
+
+            // default value for the author of the Article
+            String articleAuthor = "";
+
+            // Try to parse the tags of the currentArticle JSONObject. Articles without
+            // contributor tags throw a JSONException, in which case the author is left empty.
+            try {
+                // Extract the JSONArray containing the tags of the currentArticle JSONObject
+                JSONArray currentArticleTagsArray = currentArticle.getJSONArray("tags");
+
+                // initialize the StringBuilder containing the name of the author(s) of the Article
+                StringBuilder articleAuthorBuilder = new StringBuilder();
+
+                // articleAuthorBuilder StringBuilder should contain the name of the first
+                // author of the Article, which can be obtained by using the "webTitle" key of
+                // the first JSONObject in the currentArticleTagsArray
+                articleAuthorBuilder.append(currentArticleTagsArray.getJSONObject(0).getString("webTitle"));
+
+                //continue going through currentArticleTagsArray and get the values at keys
+                // "webTitle" of the JSONObjects in the JSONArray
+                for (int j = 1; j < currentArticleTagsArray.length(); j++) {
+                    articleAuthorBuilder.append(", ");
+                    articleAuthorBuilder.append(currentArticleTagsArray.getJSONObject(j).getString("webTitle"));
+                }
+
+                // update articleAuthor value built based on articleAuthorBuilder
+                articleAuthor = articleAuthorBuilder.toString();
+            } catch (JSONException e) {
+                // no contributor tags, keep the default author
+            }
+
+            // default values for the Article publishing date and time
+            String articleDate = "";
+            long articlePublicationTime = 0;
+
+            //Try to get the value at key "webPublicationDate". Articles without one throw a
+            // JSONException, in which case the date is left empty.
+            try {
+                // Try to update the articleDate, if such information is available
+                String rawDate = currentArticle.getString("webPublicationDate");
+                //format the date and include the resulting formatted String as a member of the
+                //Article, along with the publishing time used for sorting
+                Date publicationDate = parseDate(rawDate);
+                if (publicationDate == null) {
+                    publicationDate = new Date();
+                } else {
+                    articlePublicationTime = publicationDate.getTime();
+                }
+                articleDate = formatDate(publicationDate);
+
+            } catch (JSONException e) {
+                // no publication date, keep the default date
+            }
+
+            // extract the value for the key called "webUrl"
+            String articleUrl = currentArticle.getString("webUrl");
+
+            // create a new {@link Article} object with info from JSON response
+            articles.add(new Article(articleTitle, articleSection, articleAuthor, articleDate,
+                    articleUrl, articlePublicationTime));
+        }
+
+        // return the page of articles, along with its position in the result set
+        return new ArticlePage(articles, baseJsonResponse.optInt("currentPage", 1),
+                baseJsonResponse.optInt("pages", 1), baseJsonResponse.optInt("total", articles.size()));
+    }
+}
@@ -4,14 +4,26 @@
 package udacityscholarship.rada.raul.newsapp;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
 
 import android.content.AsyncTaskLoader;
 import android.content.Context;
+import android.net.Uri;
+import android.util.Log;
 
 /**
- * Loads a list of {@link Article} objects by using an AsyncTask to perform the
- * network request to the given URL.
+ * Loads a list of {@link Article} objects by handing the network requests to the given URL to the
+ * {@link ArticleRequestScheduler} and waiting for them on an AsyncTask. Counts larger than one
+ * page are split into one request per page: the first page tells how many pages the results
+ * have, then the remaining pages needed are queued at once so the scheduler fetches and parses
+ * them concurrently, within the rate limits of the API key. The pages are joined in page order.
+ * Cancelling the load cancels every request.
  */
 public class ArticleLoader extends AsyncTaskLoader<List<Article>> {
 
@@ -21,24 +33,145 @@ public class ArticleLoader extends AsyncTaskLoader<List<Article>> {
     private static final String LOG_TAG = ArticleLoader.class.getName();
 
     /**
-     * Query URL
+     * largest page-size value accepted by the Guardian API
+     */
+    static final int MAX_PAGE_SIZE = 200;
+
+    /**
+     * largest number of pages loaded at once, keeping a load well within the request queue of
+     * the {@link ArticleRequestScheduler} and the daily quota of the API key
+     */
+    static final int MAX_PAGE_COUNT = 10;
+
+    /**
+     * page-size key for the Guardian API
+     */
+    private static final String GUARDIAN_API_PAGE_SIZE_KEY = "page-size";
+
+    /**
+     * page key for the Guardian API
+     */
+    private static final String GUARDIAN_API_PAGE_KEY = "page";
+
+    /**
+     * Query URL, without paging parameters
      */
     private String url;
 
+    /**
+     * order-by value used in the query URL
+     */
+    private String orderBy;
+
+    /**
+     * number of {@link Article} objects to load
+     */
+    private int requestedCount;
+
+    /**
+     * number of {@link Article} objects requested per page
+     */
+    private int pageSize;
+
+    /**
+     * largest number of pages requested by a load
+     */
+    private int maxPageCount;
+
+    /**
+     * result of the last load, delivered again instead of reloading, or null
+     */
+    private List<Article> articles;
+
+    /**
+     * result of the last load if it holds the whole result set of the query, or null
+     */
+    private volatile List<Article> completeArticles;
+
+    /**
+     * requests of the pages currently being waited on by loadInBackground, or null; cleared by
+     * whichever of loadInBackground and cancelLoadInBackground finishes with them first, so they
+     * are cancelled once
+     */
+    private final AtomicReference<List<Future<ArticlePage>>> requests =
+            new AtomicReference<List<Future<ArticlePage>>>();
+
     /**
      * Constructs a new {@link Article}.
      *
-     * @param context of the activity
-     * @param url     to load data from
+     * @param context        of the activity
+     * @param url            to load data from, without page-size and page parameters
+     * @param orderBy        order-by value used in the URL
+     * @param requestedCount number of {@link Article} objects to load, at most
+     *                       maxPageCount pages
+     * @param pageSize       number of {@link Article} objects requested per page, at most
+     *                       MAX_PAGE_SIZE
+     * @param maxPageCount   largest number of pages requested, at most MAX_PAGE_COUNT
      */
-    public ArticleLoader(Context context, String url) {
+    public ArticleLoader(Context context, String url, String orderBy, int requestedCount,
+                         int pageSize, int maxPageCount) {
         super(context);
         this.url = url;
+        this.orderBy = orderBy;
+        this.pageSize = Math.max(1, Math.min(Math.min(pageSize, MAX_PAGE_SIZE), requestedCount));
+        this.maxPageCount = Math.max(1, Math.min(maxPageCount, MAX_PAGE_COUNT));
+        this.requestedCount = Math.min(requestedCount, this.pageSize * this.maxPageCount);
     }
 
+    /**
+     * @return order-by value used in the query URL
+     */
+    public String getOrderBy() {
+        return orderBy;
+    }
+
+    /**
+     * @return number of {@link Article} objects to load
+     */
+    public int getRequestedCount() {
+        return requestedCount;
+    }
+
+    /**
+     * @return true if the articles delivered last are the whole result set of the query, i.e.
+     * the API ran out of results before the requested count was reached
+     */
+    public boolean isComplete() {
+        return articles != null && articles == completeArticles;
+    }
+
+    /**
+     * @return true if this loader queries the given order and number of {@link Article} objects
+     */
+    public boolean matches(String orderBy, int requestedCount) {
+        return this.orderBy.equals(orderBy)
+                && this.requestedCount == Math.min(requestedCount, pageSize * maxPageCount);
+    }
+
+    /**
+     * Delivers the articles loaded earlier, e.g. when the activity comes back from the settings
+     * or is recreated after a rotation, and only goes to the network if there are none yet.
+     */
     @Override
     protected void onStartLoading() {
-        forceLoad();
+        if (articles != null) {
+            deliverResult(articles);
+        }
+        if (takeContentChanged() || articles == null) {
+            forceLoad();
+        }
+    }
+
+    @Override
+    public void deliverResult(List<Article> data) {
+        articles = data;
+        super.deliverResult(data);
+    }
+
+    @Override
+    protected void onReset() {
+        cancelLoad();
+        articles = null;
     }
 
     /**
@@ -50,8 +183,149 @@ public class ArticleLoader extends AsyncTaskLoader<List<Article>> {
             return null;
         }
 
-        // Perform the network request, parse the response, and extract a list of {@link Articles}.
-        List<Article> articles = ArticleQueryUtils.fetchArticleData(url);
-        return articles;
+        // Queue the request of the first page ahead of any background work
+        ArticleRequestScheduler scheduler = ArticleRequestScheduler.getInstance();
+        List<Future<ArticlePage>> pageRequests = new ArrayList<Future<ArticlePage>>();
+        pageRequests.add(scheduler.submitArticleRequest(buildPageUrl(1),
+                ArticleRequestScheduler.PRIORITY_VISIBLE));
+        requests.set(pageRequests);
+
+        // the load may have been cancelled before the request existed
+        if (isLoadInBackgroundCanceled()) {
+            cancelLoadInBackground();
+        }
+        try {
+            ArticlePage firstPage = pageRequests.get(0).get();
+            if (firstPage == null) {
+                return null;
+            }
+
+            // Queue only the pages the results actually have. Each is parsed by the scheduler
+            // as soon as its download completes, while the other pages still download. The rate
+            // limiter spaces them out anyway, so waiting for the first page costs little.
+            int neededPages = (requestedCount + pageSize - 1) / pageSize;
+            int pageCount = Math.min(neededPages, firstPage.getPages());
+            List<Future<ArticlePage>> allPageRequests =
+                    new ArrayList<Future<ArticlePage>>(pageRequests);
+            for (int page = 2; page <= pageCount; page++) {
+                allPageRequests.add(scheduler.submitArticleRequest(buildPageUrl(page),
+                        ArticleRequestScheduler.PRIORITY_VISIBLE));
+            }
+            if (!requests.compareAndSet(pageRequests, allPageRequests)) {
+                // cancelled while the first page was loading
+                cancelRequests(allPageRequests);
+                return null;
+            }
+            pageRequests = allPageRequests;
+            return joinPages(firstPage, pageRequests);
+        } catch (CancellationException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            Log.e(LOG_TAG, "Problem loading the first page of articles.", e.getCause());
+            return null;
+        } finally {
+            if (requests.compareAndSet(pageRequests, null)) {
+                // pages after a short page are not waited for, nor needed anymore
+                cancelRequests(pageRequests);
+            }
+        }
+    }
+
+    /**
+     * Called on the main thread when the load is superseded or abandoned: aborts the connections
+     * of the requests and stops their parsing at the next article.
+     */
+    @Override
+    public void cancelLoadInBackground() {
+        List<Future<ArticlePage>> currentRequests = requests.getAndSet(null);
+        if (currentRequests != null) {
+            cancelRequests(currentRequests);
+        }
+    }
+
+    /**
+     * Cancels the given page requests which have not completed yet.
+     */
+    private static void cancelRequests(List<Future<ArticlePage>> pageRequests) {
+        for (Future<ArticlePage> pageRequest : pageRequests) {
+            if (!pageRequest.isDone()) {
+                ArticleRequestScheduler.getInstance().cancel(pageRequest);
+            }
+        }
+    }
+
+    /**
+     * @return query URL of the given page of the results
+     */
+    private String buildPageUrl(int page) {
+        Uri.Builder uriBuilder = Uri.parse(url).buildUpon();
+        uriBuilder.appendQueryParameter(GUARDIAN_API_PAGE_SIZE_KEY, String.valueOf(pageSize));
+        if (page > 1) {
+            uriBuilder.appendQueryParameter(GUARDIAN_API_PAGE_KEY, String.valueOf(page));
+        }
+        return uriBuilder.toString();
+    }
+
+    /**
+     * Waits for the pages in order and joins their {@link Article} objects, stopping at the first
+     * page shorter than pageSize, which is the last page of the results. Articles seen on an
+     * earlier page are dropped: articles published during the load shift the later pages,
+     * repeating the last articles of a page at the start of the next one.
+     * The joined list is remembered as complete only if the API ran out of results and no page
+     * was missing or shifted, so that it can safely be re-sorted locally.
+     *
+     * @param firstPage    first page of the results, already loaded
+     * @param pageRequests requests of all the pages, starting with the first one
+     * @return at most requestedCount {@link Article} objects in page order
+     */
+    private List<Article> joinPages(ArticlePage firstPage, List<Future<ArticlePage>> pageRequests)
+            throws InterruptedException {
+        int expectedCount = Math.min(requestedCount, firstPage.getTotal());
+        ArrayList<Article> joinedArticles = new ArrayList<Article>(expectedCount);
+        Set<String> articleUrls = new HashSet<String>();
+        boolean reachedLastPage = false;
+        boolean pageMissing = false;
+        boolean pagesShifted = false;
+        for (int i = 0; i < pageRequests.size(); i++) {
+            ArticlePage page;
+            try {
+                page = i == 0 ? firstPage : pageRequests.get(i).get();
+            } catch (ExecutionException e) {
+                // keep the pages joined so far, like for a page that failed to download
+                Log.e(LOG_TAG, "Problem loading page " + (i + 1) + " of the articles.",
+                        e.getCause());
+                page = null;
+            }
+            if (page == null) {
+                pageMissing = true;
+                break;
+            }
+            for (Article article : page.getArticles()) {
+                if (!articleUrls.add(article.getArticleUrl())) {
+                    pagesShifted = true;
+                } else if (joinedArticles.size() < requestedCount) {
+                    joinedArticles.add(article);
+                }
+            }
+            if (page.getArticles().size() < pageSize || i + 1 >= firstPage.getPages()) {
+                reachedLastPage = true;
+                break;
+            }
+        }
+
+        if (joinedArticles.size() < expectedCount) {
+            Log.w(LOG_TAG, "Loaded " + joinedArticles.size() + " of " + expectedCount
+                    + " articles" + (pageMissing ? ", a page failed to load" : "")
+                    + (pagesShifted ? ", pages shifted during the load" : ""));
+        }
+        boolean complete = reachedLastPage && !pageMissing && !pagesShifted
+                && firstPage.getTotal() <= requestedCount;
+        if (complete) {
+            completeArticles = joinedArticles;
+        }
+        return joinedArticles;
     }
 }
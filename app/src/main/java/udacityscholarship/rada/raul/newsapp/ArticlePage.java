@@ -0,0 +1,73 @@
+package udacityscholarship.rada.raul.newsapp;
+
+import java.util.ArrayList;
+
+/**
+ * One page of {@link Article} objects returned by the Guardian API, along with its position in
+ * the whole result set of the query
+ */
+public class ArticlePage {
+
+    /**
+     * {@link Article} objects of the page, in the returned order
+     */
+    private ArrayList<Article> articles;
+
+    /**
+     * 1-based number of the page
+     */
+    private int currentPage;
+
+    /**
+     * number of pages of the whole result set
+     */
+    private int pages;
+
+    /**
+     * number of {@link Article} objects of the whole result set
+     */
+    private int total;
+
+    /**
+     * {@link ArticlePage} constructor
+     *
+     * @param articles    {@link Article} objects of the page
+     * @param currentPage 1-based number of the page
+     * @param pages       number of pages of the whole result set
+     * @param total       number of {@link Article} objects of the whole result set
+     */
+    public ArticlePage(ArrayList<Article> articles, int currentPage, int pages, int total) {
+        this.articles = articles;
+        this.currentPage = currentPage;
+        this.pages = pages;
+        this.total = total;
+    }
+
+    /**
+     * @return {@link Article} objects of the page, in the returned order
+     */
+    public ArrayList<Article> getArticles() {
+        return articles;
+    }
+
+    /**
+     * @return 1-based number of the page
+     */
+    public int getCurrentPage() {
+        return currentPage;
+    }
+
+    /**
+     * @return number of pages of the whole result set
+     */
+    public int getPages() {
+        return pages;
+    }
+
+    /**
+     * @return number of {@link Article} objects of the whole result set
+     */
+    public int getTotal() {
+        return total;
+    }
+}
@@ -0,0 +1,143 @@
+package udacityscholarship.rada.raul.newsapp;
+
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Answers queries over a set of {@link Article} objects already loaded from the Guardian API, so
+ * re-ordering does not need a new request.
+ * Sort keys (publication time, title collation key) are computed once when the set is loaded;
+ * queries then only walk a pre-sorted index.
+ * {@link #canAnswer} tells whether a query is guaranteed to return what the API would return, or
+ * whether the API must be queried again.
+ */
+public class ArticleQueryEngine {
+
+    /**
+     * Guardian API order-by value listing the most recent {@link Article} objects first
+     */
+    public static final String ORDER_NEWEST = "newest";
+
+    /**
+     * Guardian API order-by value listing the oldest {@link Article} objects first
+     */
+    public static final String ORDER_OLDEST = "oldest";
+
+    /**
+     * Guardian API order-by value listing the most relevant {@link Article} objects first
+     */
+    public static final String ORDER_RELEVANCE = "relevance";
+
+    /**
+     * loaded {@link Article} objects, in the order returned by the API
+     */
+    private final Article[] articles;
+
+    /**
+     * order-by value with which the {@link Article} objects were requested
+     */
+    private final String loadedOrderBy;
+
+    /**
+     * true if the whole result set of the query is loaded, i.e. the API ran out of results
+     * before the requested count was reached
+     */
+    private final boolean complete;
+
+    /**
+     * positions in articles sorted from newest to oldest, ties broken by title
+     */
+    private final int[] newestOrder;
+
+    /**
+     * {@link ArticleQueryEngine} constructor
+     *
+     * @param loadedArticles {@link Article} objects returned by the API, in the returned order
+     * @param orderBy        order-by value with which they were requested
+     * @param complete       true if they are the whole result set of the query
+     */
+    public ArticleQueryEngine(List<Article> loadedArticles, String orderBy, boolean complete) {
+        articles = loadedArticles.toArray(new Article[loadedArticles.size()]);
+        loadedOrderBy = orderBy;
+        this.complete = complete;
+
+        int count = articles.length;
+        final long[] publicationTimes = new long[count];
+        final CollationKey[] titleKeys = new CollationKey[count];
+        Collator collator = Collator.getInstance();
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            Article article = articles[i];
+            publicationTimes[i] = article.getArticlePublicationTime();
+            titleKeys[i] = collator.getCollationKey(nullToEmpty(article.getArticleTitle()));
+            order[i] = i;
+        }
+
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer first, Integer second) {
+                long firstTime = publicationTimes[first];
+                long secondTime = publicationTimes[second];
+                if (firstTime != secondTime) {
+                    return firstTime > secondTime ? -1 : 1;
+                }
+                return titleKeys[first].compareTo(titleKeys[second]);
+            }
+        });
+        newestOrder = new int[count];
+        for (int i = 0; i < count; i++) {
+            newestOrder[i] = order[i];
+        }
+    }
+
+    /**
+     * Tells whether a request can be answered from the loaded {@link Article} objects. With the
+     * same order, any count up to the loaded one can; a different order can only be computed
+     * from the whole result set, and relevance never locally.
+     *
+     * @param orderBy one of the ORDER_ constants
+     * @param count   number of {@link Article} objects wanted
+     * @return true if {@link #query} returns the same {@link Article} objects as the API would
+     */
+    public boolean canAnswer(String orderBy, int count) {
+        if (loadedOrderBy.equals(orderBy)) {
+            return complete || count <= articles.length;
+        }
+        return complete && (ORDER_NEWEST.equals(orderBy) || ORDER_OLDEST.equals(orderBy));
+    }
+
+    /**
+     * Lists the loaded {@link Article} objects in the given order.
+     *
+     * @param orderBy one of the ORDER_ constants; relevance keeps the order returned by the API
+     * @param count   maximum number of {@link Article} objects returned
+     * @return at most count {@link Article} objects
+     */
+    public List<Article> query(String orderBy, int count) {
+        int resultCount = Math.min(count, articles.length);
+        List<Article> result = new ArrayList<Article>(resultCount);
+        for (int i = 0; i < resultCount; i++) {
+            int position;
+            if (ORDER_NEWEST.equals(orderBy)) {
+                position = newestOrder[i];
+            } else if (ORDER_OLDEST.equals(orderBy)) {
+                position = newestOrder[articles.length - 1 - i];
+            } else {
+                position = i;
+            }
+            result.add(articles[position]);
+        }
+        return result;
+    }
+
+    /**
+     * @return the given String, or an empty String if it is null
+     */
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+}
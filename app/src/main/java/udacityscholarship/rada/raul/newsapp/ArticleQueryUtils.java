@@ -3,12 +3,11 @@
 
 package udacityscholarship.rada.raul.newsapp;
 
+import android.os.AsyncTask;
 import android.text.TextUtils;
 import android.util.Log;
 
-import org.json.JSONArray;
 import org.json.JSONException;
-import org.json.JSONObject;
 
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -18,10 +17,6 @@ import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.charset.Charset;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.ArrayList;
-import java.util.Date;
 
 /**
  * Helper class containing only static methods for fetching {@link Article} relevant information
@@ -50,6 +45,11 @@ public final class ArticleQueryUtils {
      */
     private static final int READ_TIMEOUT = 10000;
 
+    /**
+     * HTTP status code of a request refused by the rate limits of the API key
+     */
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
     /**
      * Private class contructor in order to prevent creation of objects. Class is relevant only
      * for its static methods, which do not need class instantiations in order to be used.
@@ -70,11 +70,27 @@ public final class ArticleQueryUtils {
         return url;
     }
 
+    /**
+     * Thrown when the API answered 429 Too Many Requests, after the {@link ApiRateLimiter} has
+     * recorded its back-off.
+     */
+    private static final class RateLimitedException extends IOException {
+
+        RateLimitedException() {
+            super("Guardian API rate limit exceeded");
+        }
+    }
+
     /**
      * Make an HTTP request to the given URL and return a String as the response.
+     * Cancelling the token disconnects the connection on a background thread, aborting a read in
+     * progress.
+     *
+     * @throws RateLimitedException if the API answered 429 Too Many Requests
      */
-    private static String makeHttpRequest(URL url) throws IOException {
+    private static String makeHttpRequest(URL url, CancellationToken token) throws IOException {
         String jsonResponse = "";
+        boolean rateLimited = false;
 
         // If the URL is null, then return early.
         if (url == null) {
@@ -85,22 +101,53 @@ public final class ArticleQueryUtils {
         InputStream inputStream = null;
         try {
             urlConnection = (HttpURLConnection) url.openConnection();
+            final HttpURLConnection connection = urlConnection;
+            token.setOnCancelListener(new Runnable() {
+                @Override
+                public void run() {
+                    // cancellation usually comes from the main thread, where closing the TLS
+                    // socket would be network I/O
+                    AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            connection.disconnect();
+                        }
+                    });
+                }
+            });
             urlConnection.setReadTimeout(READ_TIMEOUT /* milliseconds */);
             urlConnection.setConnectTimeout(CONNECTION_TIMEOUT /* milliseconds */);
             urlConnection.setRequestMethod("GET");
             urlConnection.connect();
 
+            // report the rate-limit headers of the response, so the next requests stay within
+            // the limits of the API key
+            int responseCode = urlConnection.getResponseCode();
+            ApiRateLimiter rateLimiter = ApiRateLimiter.getInstance();
+            rateLimiter.onResponse(responseCode,
+                    urlConnection.getHeaderField(ApiRateLimiter.HEADER_LIMIT_DAY),
+                    urlConnection.getHeaderField(ApiRateLimiter.HEADER_REMAINING_DAY),
+                    urlConnection.getHeaderField(ApiRateLimiter.HEADER_REMAINING_MINUTE),
+                    urlConnection.getHeaderField(ApiRateLimiter.HEADER_RETRY_AFTER));
+            Log.d(LOG_TAG, "Remaining daily API quota: " + rateLimiter.getRemainingDailyQuota()
+                    + "/" + rateLimiter.getDailyLimit());
+
             // If the request was successful (response code 200 (HttpURLConnection.HTTP_OK)),
             // then read the input stream and parse the response.
-            if (urlConnection.getResponseCode() == HttpURLConnection.HTTP_OK) {
+            if (responseCode == HttpURLConnection.HTTP_OK) {
                 inputStream = urlConnection.getInputStream();
-                jsonResponse = readFromStream(inputStream);
+                jsonResponse = readFromStream(inputStream, token);
+            } else if (responseCode == HTTP_TOO_MANY_REQUESTS) {
+                rateLimited = true;
             } else {
                 Log.e(LOG_TAG, "Error response message: " + urlConnection.getResponseMessage());
             }
         } catch (IOException e) {
-            Log.e(LOG_TAG, "Problem retrieving the earthquake JSON results.", e);
+            if (!token.isCancelled()) {
+                Log.e(LOG_TAG, "Problem retrieving the earthquake JSON results.", e);
+            }
         } finally {
+            token.setOnCancelListener(null);
             if (urlConnection != null) {
                 urlConnection.disconnect();
             }
@@ -111,20 +158,27 @@ public final class ArticleQueryUtils {
                 inputStream.close();
             }
         }
+        if (rateLimited) {
+            throw new RateLimitedException();
+        }
         return jsonResponse;
     }
 
     /**
      * Convert the {@link InputStream} into a String which contains the
-     * whole JSON response from the server.
+     * whole JSON response from the server, or an empty String if the token is cancelled.
      */
-    private static String readFromStream(InputStream inputStream) throws IOException {
+    private static String readFromStream(InputStream inputStream, CancellationToken token)
+            throws IOException {
         StringBuilder output = new StringBuilder();
         if (inputStream != null) {
             InputStreamReader inputStreamReader = new InputStreamReader(inputStream, Charset.forName("UTF-8"));
             BufferedReader reader = new BufferedReader(inputStreamReader);
             String line = reader.readLine();
             while (line != null) {
+                if (token.isCancelled()) {
+                    return "";
+                }
                 output.append(line);
                 line = reader.readLine();
             }
@@ -133,149 +187,64 @@ public final class ArticleQueryUtils {
     }
 
     /**
-     * Static method which formats the date displayed to the user
-     * @param dateObject String date which must be formatted
-     * @return formmated date
-     */
-    private static String formatDate(String dateObject) {
-        Date date1 = new Date();
-        try {
-            date1 = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'").parse(dateObject);
-        } catch (ParseException e) {
-
-        }
-        SimpleDateFormat dateFormat = new SimpleDateFormat("dd LLL yyyy");
-
-        return dateFormat.format(date1).toString();
-    }
-
-    /**
-     * Return a list of {@link Article} objects that has been built up from
+     * Return the page of {@link Article} objects that has been built up from
      * parsing the given JSON response.
      *
      * @param articleJSON from which the {@link Article} objects data will be extracted
-     * @return ArrayList of {@link Article} objects
+     * @param token       checked before each article; parsing stops once it is cancelled
+     * @return page of {@link Article} objects, or null if the response is empty or malformed, or
+     * parsing was cancelled
      */
-    private static ArrayList<Article> extractFeatureFromJson(String articleJSON) {
-        // If the JSON string is empty or null, then return early.
-        if (TextUtils.isEmpty(articleJSON)) {
+    private static ArticlePage extractFeatureFromJson(String articleJSON,
+                                                      CancellationToken token) {
+        // If the JSON string is empty or null, or nobody needs the result anymore, then return
+        // early.
+        if (TextUtils.isEmpty(articleJSON) || token.isCancelled()) {
             return null;
         }
 
-        //Create empty ArrayList<Article> which will contain the relevant Articles
-        ArrayList<Article> articles = new ArrayList<Article>();
-
         // Try to parse the JSON response string. If there's a problem with the way the JSON
         // is formatted, a JSONException exception object will be thrown.
         // Catch the exception so the app doesn't crash, and print the error message to the logs.
         try {
-            // Create a JSONObject from the JSON response string
-            JSONObject rootJsonResponse = new JSONObject(articleJSON);
-
-            // Get JSONObject containing info about all Articles
-            JSONObject baseJsonResponse = rootJsonResponse.getJSONObject("response");
-
-            // Extract the JSONArray associated with the key called "results",
-            // which represents a list of articles.
-            JSONArray articlesArray = baseJsonResponse.getJSONArray("results");
-
-            // for each article in articlesArray, create an {@link Article} object and add it to
-            // the articles ArrayList
-            for (int i = 0; i < articlesArray.length(); i++) {
-
-                // get a single Article at position i within the list of Articles
-                JSONObject currentArticle = articlesArray.getJSONObject(i);
-
-                // extract the value for the key called "webTitle"
-                String articleTitle = currentArticle.getString("webTitle");
-
-                // extract the value for the key called "sectionName"
-                String articleSection = currentArticle.getString("sectionName");
-
-                // default value for the author of the Article
-                String articleAuthor = "";
-
-                // Try to parse the tags of the currentArticle JSONObject. If there's a problem,
-                // a JSONException exception object will be thrown.
-                // Catch the exception so the app doesn't crash, and print the error message to the logs.
-                try {
-                    // Extract the JSONArray containing the tags of the currentArticle JSONObject
-                    JSONArray currentArticleTagsArray = currentArticle.getJSONArray("tags");
-
-                    // initialize the StringBuilder containing the name of the author(s) of the Article
-                    StringBuilder articleAuthorBuilder = new StringBuilder();
-
-                    // articleAuthorBuilder StringBuilder should contain the name of the first
-                    // author of the Article, which can be obtained by using the "webTitle" key of
-                    // the first JSONObject in the currentArticleTagsArray
-                    articleAuthorBuilder.append(currentArticleTagsArray.getJSONObject(0).getString("webTitle"));
-
-                    //continue going through currentArticleTagsArray and get the values at keys
-                    // "webTitle" of the JSONObjects in the JSONArray
-                    for (int j = 1; j < currentArticleTagsArray.length(); j++) {
-                        articleAuthorBuilder.append(", ");
-                        articleAuthorBuilder.append(currentArticleTagsArray.getJSONObject(j).getString("webTitle"));
-                    }
-
-                    // update articleAuthor value built based on articleAuthorBuilder
-                    articleAuthor = articleAuthorBuilder.toString();
-                } catch (JSONException e) {
-                    Log.e("ArticleQueryUtils", "Problem getting the article tags", e);
-                }
-
-                // default value for the Article publishing date
-                String articleDate = "";
-
-                //Try to get the value at key "webPublicationDate"
-                // a JSONException exception object will be thrown.
-                // Catch the exception so the app doesn't crash, and print the error message to the logs.
-                try {
-                    // Try to update the articleDate, if such information is available
-                    String rawDate = currentArticle.getString("webPublicationDate");
-                    //format the date and include the resulting formatted String as a member of the Article
-                    articleDate = formatDate(rawDate);
-
-                } catch (JSONException e) {
-                    Log.e("ArticleQueryUtils", "Problem getting the article tags", e);
-                }
-
-                // extract the value for the key called "webUrl"
-                String articleUrl = currentArticle.getString("webUrl");
-
-                // create a new {@link Article} object with info from JSON response
-                articles.add(new Article(articleTitle, articleSection, articleAuthor, articleDate, articleUrl));
-            }
-
+            return ArticleJsonParser.parsePage(articleJSON, token);
         } catch (JSONException e) {
-            // If an error is thrown when executing any of the above statements in the "try" block,
-            // catch the exception here, so the app doesn't crash. Print a log message
-            // with the message from the exception.
             Log.e("ArticleQueryUtils", "Problem parsing the article JSON results", e);
+            return null;
         }
-
-        // return the ArrayList of articles
-        return articles;
     }
 
     /**
-     * Query the Guardian dataset and return a list of {@link Article} objects.
+     * Query the Guardian dataset and return a page of {@link Article} objects, along with the
+     * size of the whole result set.
+     *
+     * @param requestUrl Guardian API URL to query
+     * @param token      aborts the download and parsing once cancelled
+     * @return page of {@link Article} objects, or null if the request failed or was cancelled
      */
-    public static ArrayList<Article> fetchArticleData(String requestUrl) {
+    public static ArticlePage fetchArticlePage(String requestUrl, CancellationToken token) {
         // Create URL object
         URL url = createUrl(requestUrl);
 
         // Perform HTTP request to the URL and receive a JSON response back
         String jsonResponse = null;
         try {
-            jsonResponse = makeHttpRequest(url);
+            try {
+                jsonResponse = makeHttpRequest(url, token);
+            } catch (RateLimitedException e) {
+                // retry once, as soon as the rate limiter has waited out the back-off it recorded
+                if (ApiRateLimiter.getInstance().acquire() && !token.isCancelled()) {
+                    jsonResponse = makeHttpRequest(url, token);
+                }
+            }
+        } catch (InterruptedException e) {
+            // interrupted while waiting out the back-off, e.g. to make way for a visible request
+            Thread.currentThread().interrupt();
         } catch (IOException e) {
             Log.e(LOG_TAG, "Problem making the HTTP request.", e);
         }
 
-        // Extract relevant fields from the JSON response and create a list of {@link Earthquake}s
-        ArrayList<Article> articles = extractFeatureFromJson(jsonResponse);
-
-        // Return the list of {@link Earthquake}s
-        return articles;
+        // Extract relevant fields from the JSON response and create a page of {@link Article}s
+        return extractFeatureFromJson(jsonResponse, token);
     }
 }
@@ -0,0 +1,567 @@
+package udacityscholarship.rada.raul.newsapp;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Queues every request made to the Guardian API and sends them in priority order, at the highest
+ * rate allowed by the {@link ApiRateLimiter} of the API key.
+ * Identical requests submitted while one of them is still pending are coalesced into a single
+ * network call, whose result is shared by all callers.
+ * Requests run on a dedicated executor with a bounded queue and can be cancelled while they run:
+ * {@link #cancel(Future)} fires the {@link CancellationToken} handed to the request, which aborts
+ * its connection and stops its parsing.
+ * Visible requests never wait behind less urgent work: they get rate-limiter tokens first, and if
+ * every worker is busy with a less urgent request, the least urgent one is preempted. Its attempt
+ * is aborted through its token and it goes back to the queue, to be restarted from scratch once
+ * the more urgent work is done.
+ */
+public final class ArticleRequestScheduler {
+
+    /**
+     * priority of requests for content the user is waiting on
+     */
+    public static final int PRIORITY_VISIBLE = 0;
+
+    /**
+     * priority of requests for content the user is likely to need soon
+     */
+    public static final int PRIORITY_PREFETCH = 1;
+
+    /**
+     * priority of requests nobody is waiting on
+     */
+    public static final int PRIORITY_BACKGROUND = 2;
+
+    /**
+     * number of threads sending requests; the rate limiter, not this value, bounds throughput
+     */
+    private static final int WORKER_COUNT = 2;
+
+    /**
+     * maximum number of requests waiting for a worker
+     */
+    private static final int MAX_QUEUE_DEPTH = 32;
+
+    /**
+     * scheduler shared by every request of the app
+     */
+    private static ArticleRequestScheduler instance;
+
+    /**
+     * executor running the requests, ordered by a {@link PriorityBlockingQueue}
+     */
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * limiter consulted before each request is sent
+     */
+    private final ApiRateLimiter rateLimiter;
+
+    /**
+     * maximum number of requests waiting for a worker
+     */
+    private final int maxQueueDepth;
+
+    /**
+     * number of threads sending requests
+     */
+    private final int workerCount;
+
+    /**
+     * requests not yet completed, by key; also guards the waiter count of each request
+     */
+    private final Map<String, ScheduledRequest<?>> pendingRequests =
+            new HashMap<String, ScheduledRequest<?>>();
+
+    /**
+     * requests currently held by a worker, guarded by the pendingRequests lock
+     */
+    private final Set<ScheduledRequest<?>> runningRequests = new HashSet<ScheduledRequest<?>>();
+
+    /**
+     * submission counter keeping requests of equal priority in FIFO order
+     */
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * number of requests refused or evicted because the queue was full
+     */
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    /**
+     * number of requests cancelled by all of their callers
+     */
+    private final AtomicLong cancelledCount = new AtomicLong();
+
+    /**
+     * number of times a running request made way for a more urgent one
+     */
+    private final AtomicLong preemptedCount = new AtomicLong();
+
+    /**
+     * Performs one request to the API.
+     */
+    public interface Request<V> {
+
+        /**
+         * Runs on a worker thread once a token has been taken from the rate limiter.
+         *
+         * @param token cancelled when no caller needs the result anymore
+         * @return result of the request
+         */
+        V execute(CancellationToken token) throws Exception;
+    }
+
+    /**
+     * {@link ArticleRequestScheduler} constructor
+     *
+     * @param rateLimiter   limiter consulted before each request is sent
+     * @param workerCount   number of threads sending requests
+     * @param maxQueueDepth maximum number of requests waiting for a worker
+     */
+    ArticleRequestScheduler(ApiRateLimiter rateLimiter, int workerCount, int maxQueueDepth) {
+        this.rateLimiter = rateLimiter;
+        this.workerCount = workerCount;
+        this.maxQueueDepth = maxQueueDepth;
+        this.executor = new ThreadPoolExecutor(workerCount, workerCount, 0L,
+                TimeUnit.MILLISECONDS, new PriorityBlockingQueue<Runnable>(),
+                new WorkerThreadFactory()) {
+            @Override
+            protected void beforeExecute(Thread worker, Runnable task) {
+                // count the worker as busy as soon as it takes the request off the queue, so
+                // preemptFor never mistakes it for an idle one
+                ((ScheduledRequest<?>) task).onDequeued(worker);
+            }
+        };
+        // workers must exist before requests are re-queued directly on the queue
+        this.executor.prestartAllCoreThreads();
+    }
+
+    /**
+     * @return the {@link ArticleRequestScheduler} shared by every request of the app
+     */
+    public static synchronized ArticleRequestScheduler getInstance() {
+        if (instance == null) {
+            instance = new ArticleRequestScheduler(ApiRateLimiter.getInstance(), WORKER_COUNT,
+                    MAX_QUEUE_DEPTH);
+        }
+        return instance;
+    }
+
+    /**
+     * Schedules the download of the page of {@link Article} objects at the given URL.
+     *
+     * @param requestUrl Guardian API URL to query
+     * @param priority   one of the PRIORITY_ constants
+     * @return {@link Future} holding the parsed page, or null if the request failed
+     */
+    public Future<ArticlePage> submitArticleRequest(final String requestUrl, int priority) {
+        return submit(requestUrl, priority, new Request<ArticlePage>() {
+            @Override
+            public ArticlePage execute(CancellationToken token) {
+                return ArticleQueryUtils.fetchArticlePage(requestUrl, token);
+            }
+        });
+    }
+
+    /**
+     * Schedules a request to the API. If a request with the same key is already pending, its
+     * {@link Future} is returned instead, raised to the given priority if needed.
+     * When the queue is full, the lowest-priority queued request is evicted to make room, or the
+     * new request fails with a {@link RejectedExecutionException} if it ranks lowest itself.
+     *
+     * @param key      identifies requests returning the same result, e.g. their URL
+     * @param priority one of the PRIORITY_ constants
+     * @param task     performs the request
+     * @return {@link Future} holding the result of the request
+     */
+    @SuppressWarnings("unchecked")
+    public <V> Future<V> submit(String key, int priority, Request<V> task) {
+        synchronized (pendingRequests) {
+            ScheduledRequest<?> pending = pendingRequests.get(key);
+            if (pending != null && !pending.isDone()) {
+                pending.waiters++;
+                raisePriority(pending, priority);
+                return (Future<V>) pending;
+            }
+            ScheduledRequest<V> request = new ScheduledRequest<V>(key, priority,
+                    sequence.getAndIncrement(), task);
+            if (!makeRoomFor(request)) {
+                rejectedCount.incrementAndGet();
+                request.fail(new RejectedExecutionException("Request queue full"));
+                return request;
+            }
+            pendingRequests.put(key, request);
+            executor.execute(request);
+            preemptFor(request);
+            return request;
+        }
+    }
+
+    /**
+     * Tells the scheduler a caller no longer needs the result of a request. Once every caller
+     * sharing the request has done so, it is removed from the queue or, if already running,
+     * its {@link CancellationToken} is fired.
+     *
+     * @param future returned by {@link #submit} or {@link #submitArticleRequest}
+     */
+    public void cancel(Future<?> future) {
+        if (!(future instanceof ScheduledRequest)) {
+            future.cancel(true);
+            return;
+        }
+        ScheduledRequest<?> request = (ScheduledRequest<?>) future;
+        synchronized (pendingRequests) {
+            if (request.isDone() || --request.waiters > 0) {
+                return;
+            }
+            // forget the request before releasing the lock, so no new caller can join it
+            if (pendingRequests.get(request.key) == request) {
+                pendingRequests.remove(request.key);
+            }
+            executor.remove(request);
+            if (request.cancel(true)) {
+                cancelledCount.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * @return number of times a running request made way for a more urgent one
+     */
+    public long getPreemptedCount() {
+        return preemptedCount.get();
+    }
+
+    /**
+     * @return number of requests which can still be sent today with the API key
+     */
+    public int getRemainingDailyQuota() {
+        return rateLimiter.getRemainingDailyQuota();
+    }
+
+    /**
+     * @return number of requests waiting for a worker
+     */
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * @return number of requests being sent or parsed right now
+     */
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * @return number of requests which ran to completion, failure or cancellation
+     */
+    public long getCompletedCount() {
+        return executor.getCompletedTaskCount();
+    }
+
+    /**
+     * @return number of requests refused or evicted because the queue was full
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * @return number of requests cancelled by all of their callers
+     */
+    public long getCancelledCount() {
+        return cancelledCount.get();
+    }
+
+    /**
+     * Moves a queued request ahead if it is now needed with a higher priority.
+     * Must be called while holding the pendingRequests lock.
+     */
+    private void raisePriority(ScheduledRequest<?> request, int priority) {
+        BlockingQueue<Runnable> queue = executor.getQueue();
+        if (priority < request.priority && queue.remove(request)) {
+            request.priority = priority;
+            queue.add(request);
+            preemptFor(request);
+        }
+    }
+
+    /**
+     * Makes a worker available for a queued visible request if all of them are busy with less
+     * urgent requests, by preempting the least urgent one.
+     * Must be called while holding the pendingRequests lock.
+     */
+    private void preemptFor(ScheduledRequest<?> request) {
+        if (request.priority != PRIORITY_VISIBLE || runningRequests.size() < workerCount) {
+            return;
+        }
+        ScheduledRequest<?> victim = null;
+        for (ScheduledRequest<?> running : runningRequests) {
+            if (running.priority > request.priority && !running.isPreempted()
+                    && (victim == null || running.compareTo(victim) > 0)) {
+                victim = running;
+            }
+        }
+        if (victim != null && victim.preempt()) {
+            preemptedCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Evicts the lowest-ranked queued request if the queue is full and it ranks below the given
+     * one. Must be called while holding the pendingRequests lock.
+     *
+     * @return true if the given request may be queued
+     */
+    private boolean makeRoomFor(ScheduledRequest<?> request) {
+        BlockingQueue<Runnable> queue = executor.getQueue();
+        if (queue.size() < maxQueueDepth) {
+            return true;
+        }
+        ScheduledRequest<?> lowest = null;
+        for (Runnable queued : queue) {
+            ScheduledRequest<?> candidate = (ScheduledRequest<?>) queued;
+            if (lowest == null || candidate.compareTo(lowest) > 0) {
+                lowest = candidate;
+            }
+        }
+        if (lowest == null || lowest.compareTo(request) < 0 || !queue.remove(lowest)) {
+            return false;
+        }
+        rejectedCount.incrementAndGet();
+        lowest.cancel(true);
+        return true;
+    }
+
+    /**
+     * Request waiting in the queue of the executor, ordered by priority and then by submission.
+     * Each attempt to run it gets a fresh {@link CancellationToken}, so that a preempted attempt
+     * can be aborted and the request run again later.
+     */
+    private final class ScheduledRequest<V> extends FutureTask<V>
+            implements Comparable<ScheduledRequest<?>> {
+
+        private final String key;
+        private final long sequenceNumber;
+        private final Request<V> request;
+        private volatile int priority;
+
+        /**
+         * number of callers sharing this request, guarded by the pendingRequests lock
+         */
+        private int waiters = 1;
+
+        /**
+         * worker thread running the request, guarded by this
+         */
+        private Thread runner;
+
+        /**
+         * token of the attempt in progress, guarded by this
+         */
+        private CancellationToken attemptToken;
+
+        /**
+         * true if the attempt in progress must make way for a more urgent request, guarded by this
+         */
+        private boolean preempted;
+
+        ScheduledRequest(String key, int priority, long sequenceNumber, Request<V> request) {
+            super(new Runnable() {
+                @Override
+                public void run() {
+                    // results are set by ScheduledRequest.run, never by FutureTask.run
+                }
+            }, null);
+            this.key = key;
+            this.priority = priority;
+            this.sequenceNumber = sequenceNumber;
+            this.request = request;
+        }
+
+        /**
+         * Called on the worker thread which took the request off the queue, before it runs.
+         */
+        void onDequeued(Thread worker) {
+            synchronized (this) {
+                runner = worker;
+            }
+            synchronized (pendingRequests) {
+                runningRequests.add(this);
+                // a visible request queued while this worker was between the queue and here
+                // found it idle and skipped preemption; check again now that it is busy
+                Runnable next = executor.getQueue().peek();
+                if (next != null) {
+                    preemptFor((ScheduledRequest<?>) next);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            if (isDone()) {
+                finishAttempt();
+                return;
+            }
+            try {
+                if (!rateLimiter.acquire(priority)) {
+                    setException(new IOException("Daily Guardian API quota exhausted"));
+                    return;
+                }
+                CancellationToken token = startAttempt();
+                if (token != null) {
+                    V result = request.execute(token);
+                    if (!isPreempted()) {
+                        set(result);
+                    }
+                }
+            } catch (InterruptedException e) {
+                if (!isPreempted()) {
+                    Thread.currentThread().interrupt();
+                    setException(e);
+                }
+            } catch (Exception e) {
+                if (!isPreempted()) {
+                    setException(e);
+                }
+            } finally {
+                finishAttempt();
+            }
+        }
+
+        /**
+         * @return token of the new attempt, or null if the request was preempted or cancelled
+         * while waiting for the rate limiter
+         */
+        private synchronized CancellationToken startAttempt() {
+            if (preempted || isDone()) {
+                return null;
+            }
+            attemptToken = new CancellationToken();
+            return attemptToken;
+        }
+
+        /**
+         * Releases the worker, putting the request back in the queue if it was preempted.
+         */
+        private void finishAttempt() {
+            boolean requeue;
+            synchronized (this) {
+                requeue = preempted && !isDone();
+                preempted = false;
+                attemptToken = null;
+                runner = null;
+            }
+            // clear an interrupt aimed at the wait for the rate limiter
+            Thread.interrupted();
+            synchronized (pendingRequests) {
+                runningRequests.remove(this);
+                if (requeue) {
+                    // back in the queue under the same depth limit as a new request
+                    if (makeRoomFor(this)) {
+                        executor.getQueue().add(this);
+                    } else {
+                        rejectedCount.incrementAndGet();
+                        fail(new RejectedExecutionException("Request queue full"));
+                    }
+                }
+            }
+        }
+
+        /**
+         * Aborts the attempt in progress, either through its token or, while it still waits for
+         * the rate limiter, by interrupting the worker.
+         *
+         * @return true if the request was running and has been preempted
+         */
+        synchronized boolean preempt() {
+            if (preempted || runner == null || isDone()) {
+                return false;
+            }
+            preempted = true;
+            if (attemptToken != null) {
+                attemptToken.cancel();
+            } else {
+                runner.interrupt();
+            }
+            return true;
+        }
+
+        /**
+         * @return true if the attempt in progress is being preempted
+         */
+        synchronized boolean isPreempted() {
+            return preempted;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            // abort the connection and parsing rather than interrupting the worker thread
+            boolean cancelled = super.cancel(false);
+            CancellationToken token;
+            synchronized (this) {
+                token = attemptToken;
+            }
+            if (token != null) {
+                token.cancel();
+            }
+            return cancelled;
+        }
+
+        /**
+         * Completes the request with the given failure without running it.
+         */
+        void fail(Throwable failure) {
+            setException(failure);
+        }
+
+        @Override
+        protected void done() {
+            synchronized (pendingRequests) {
+                if (pendingRequests.get(key) == this) {
+                    pendingRequests.remove(key);
+                }
+            }
+        }
+
+        @Override
+        public int compareTo(ScheduledRequest<?> other) {
+            if (priority != other.priority) {
+                return priority < other.priority ? -1 : 1;
+            }
+            return sequenceNumber < other.sequenceNumber ? -1
+                    : (sequenceNumber == other.sequenceNumber ? 0 : 1);
+        }
+    }
+
+    /**
+     * Creates named daemon threads, so pending requests never keep the process alive.
+     */
+    private static final class WorkerThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "article-request-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package udacityscholarship.rada.raul.newsapp;
+
+/**
+ * Signals a running request that its result is no longer needed.
+ * Long operations either poll {@link #isCancelled()} at safe points, or register a listener
+ * aborting blocking work, e.g. closing the connection a thread is reading from.
+ */
+public final class CancellationToken {
+
+    /**
+     * true once {@link #cancel()} has been called
+     */
+    private volatile boolean cancelled;
+
+    /**
+     * action run on cancellation, or null
+     */
+    private Runnable onCancelListener;
+
+    /**
+     * Cancels the operation, running the registered listener on the calling thread.
+     * Calling it more than once has no further effect.
+     */
+    public void cancel() {
+        Runnable listener;
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            listener = onCancelListener;
+            onCancelListener = null;
+        }
+        if (listener != null) {
+            listener.run();
+        }
+    }
+
+    /**
+     * @return true if the operation has been cancelled
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Sets the action aborting the blocking work currently in progress. If the operation has
+     * already been cancelled, the action runs immediately on the calling thread.
+     *
+     * @param listener action run on cancellation, or null to clear the previous one
+     */
+    public void setOnCancelListener(Runnable listener) {
+        synchronized (this) {
+            if (!cancelled) {
+                onCancelListener = listener;
+                return;
+            }
+        }
+        if (listener != null) {
+            listener.run();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package udacityscholarship.rada.raul.newsapp;
+
+/**
+ * Set of non-zero long values stored in a single open-addressed array with linear probing, so
+ * each entry costs 8 to 16 bytes instead of a boxed Long plus a hash map node.
+ * Entries cannot be removed one by one; the whole set is dropped instead. Not thread-safe.
+ */
+final class LongHashSet {
+
+    /**
+     * marker of an empty slot, which is why 0 cannot be stored
+     */
+    private static final long EMPTY = 0L;
+
+    /**
+     * slots of the set, a power of two in length
+     */
+    private long[] table;
+
+    /**
+     * number of values in the set
+     */
+    private int size;
+
+    /**
+     * {@link LongHashSet} constructor
+     *
+     * @param expectedSize number of values the set should hold without growing
+     */
+    LongHashSet(int expectedSize) {
+        table = new long[tableSizeFor(expectedSize)];
+    }
+
+    /**
+     * @param value non-zero value to add
+     * @return true if the value was not in the set yet
+     */
+    boolean add(long value) {
+        if (value == EMPTY) {
+            throw new IllegalArgumentException("0 cannot be stored in a LongHashSet");
+        }
+        int mask = table.length - 1;
+        int slot = mix(value) & mask;
+        while (table[slot] != EMPTY) {
+            if (table[slot] == value) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = value;
+        size++;
+        // keep the load factor at or below 3/4 so probe sequences stay short
+        if (size * 4 > table.length * 3) {
+            grow();
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the given value is in the set
+     */
+    boolean contains(long value) {
+        if (value == EMPTY) {
+            return false;
+        }
+        int mask = table.length - 1;
+        int slot = mix(value) & mask;
+        while (table[slot] != EMPTY) {
+            if (table[slot] == value) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * @return number of values in the set
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the values of the set, in no particular order
+     */
+    long[] toArray() {
+        long[] values = new long[size];
+        int index = 0;
+        for (long value : table) {
+            if (value != EMPTY) {
+                values[index++] = value;
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Doubles the number of slots, re-inserting every value.
+     */
+    private void grow() {
+        long[] oldTable = table;
+        table = new long[oldTable.length * 2];
+        int mask = table.length - 1;
+        for (long value : oldTable) {
+            if (value != EMPTY) {
+                int slot = mix(value) & mask;
+                while (table[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = value;
+            }
+        }
+    }
+
+    /**
+     * @return well-spread bits of the given value, used as the home slot
+     */
+    private static int mix(long value) {
+        long mixed = value * 0x9E3779B97F4A7C15L;
+        return (int) (mixed ^ (mixed >>> 32));
+    }
+
+    /**
+     * @return smallest power of two holding the expected number of values at a 3/4 load factor
+     */
+    private static int tableSizeFor(int expectedSize) {
+        int minimumSize = Math.max(4, (int) Math.min(1 << 30, (expectedSize * 4L + 2) / 3 + 1));
+        return Integer.highestOneBit(minimumSize - 1) << 1;
+    }
+}
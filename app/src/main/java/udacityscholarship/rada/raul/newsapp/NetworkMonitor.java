@@ -0,0 +1,273 @@
+package udacityscholarship.rada.raul.newsapp;
+
+import android.annotation.TargetApi;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkInfo;
+import android.net.NetworkRequest;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Follows the state of the device network connection and holds back loads while the device is
+ * offline, running them on the main thread as soon as a usable network appears.
+ * On API 21+ the state is driven by {@link ConnectivityManager.NetworkCallback}; on API 23+ a
+ * network only counts as connected once the system has validated its internet access. Older
+ * devices fall back to the CONNECTIVITY_ACTION broadcast.
+ * The monitor also derives the fetch policy from the transport: metered networks get fewer,
+ * smaller pages and no prefetching.
+ */
+public class NetworkMonitor {
+
+    /**
+     * maximum number of {@link Article} objects requested at once over a metered network
+     */
+    public static final int METERED_MAX_PAGE_SIZE = 20;
+
+    /**
+     * maximum number of pages requested by a single load over a metered network
+     */
+    public static final int METERED_MAX_PAGE_COUNT = 1;
+
+    /**
+     * system service used to query the network state
+     */
+    private final ConnectivityManager connectivityManager;
+
+    /**
+     * context used to register the broadcast receiver on devices older than API 21
+     */
+    private final Context context;
+
+    /**
+     * handler moving network events onto the main thread
+     */
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * loads waiting for the device to come back online, in submission order
+     */
+    private final List<Runnable> pendingLoads = new ArrayList<Runnable>();
+
+    /**
+     * true if the active network has (validated) internet access
+     */
+    private boolean connected;
+
+    /**
+     * true if the active network is metered, e.g. cellular
+     */
+    private boolean metered;
+
+    /**
+     * true between {@link #start()} and {@link #stop()}
+     */
+    private boolean started;
+
+    /**
+     * callback registered on API 21+
+     */
+    private ConnectivityManager.NetworkCallback networkCallback;
+
+    /**
+     * receiver registered on devices older than API 21
+     */
+    private BroadcastReceiver connectivityReceiver;
+
+    /**
+     * {@link NetworkMonitor} constructor
+     *
+     * @param context of the activity
+     */
+    public NetworkMonitor(Context context) {
+        this.context = context.getApplicationContext();
+        this.connectivityManager = (ConnectivityManager)
+                context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        updateNetworkState();
+    }
+
+    /**
+     * Starts listening for network changes. Must be called on the main thread.
+     */
+    public void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            registerNetworkCallback();
+        } else {
+            connectivityReceiver = new BroadcastReceiver() {
+                @Override
+                public void onReceive(Context context, Intent intent) {
+                    onNetworkChanged();
+                }
+            };
+            context.registerReceiver(connectivityReceiver,
+                    new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION));
+        }
+        // the network may have changed while we were not listening
+        onNetworkChanged();
+    }
+
+    /**
+     * Stops listening for network changes. Pending loads are kept until the next
+     * {@link #start()}. Must be called on the main thread.
+     */
+    public void stop() {
+        if (!started) {
+            return;
+        }
+        started = false;
+        if (networkCallback != null) {
+            connectivityManager.unregisterNetworkCallback(networkCallback);
+            networkCallback = null;
+        }
+        if (connectivityReceiver != null) {
+            context.unregisterReceiver(connectivityReceiver);
+            connectivityReceiver = null;
+        }
+        mainHandler.removeCallbacksAndMessages(null);
+    }
+
+    /**
+     * Runs the given load now if the device is online, otherwise queues it until a usable network
+     * appears. A load already queued is not queued twice. Must be called on the main thread.
+     *
+     * @param load work needing the network
+     */
+    public void runWhenConnected(Runnable load) {
+        if (connected) {
+            load.run();
+        } else if (!pendingLoads.contains(load)) {
+            pendingLoads.add(load);
+        }
+    }
+
+    /**
+     * @return true if the device currently has internet access
+     */
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * @return true if the current network is metered, e.g. cellular
+     */
+    public boolean isMetered() {
+        return metered;
+    }
+
+    /**
+     * @return true if work the user has not asked for yet may use the current network
+     */
+    public boolean isPrefetchAllowed() {
+        return connected && !metered;
+    }
+
+    /**
+     * Limits the number of {@link Article} objects requested at once on metered networks.
+     *
+     * @param requestedPageSize page size wanted over an unmetered network
+     * @return page size to request over the current network
+     */
+    public int getPageSize(int requestedPageSize) {
+        return metered ? Math.min(requestedPageSize, METERED_MAX_PAGE_SIZE) : requestedPageSize;
+    }
+
+    /**
+     * Limits the number of pages requested by a single load on metered networks, so that smaller
+     * pages do not turn into more requests for the same number of {@link Article} objects.
+     *
+     * @param requestedPageCount page count wanted over an unmetered network
+     * @return page count to request over the current network
+     */
+    public int getPageCount(int requestedPageCount) {
+        return metered ? Math.min(requestedPageCount, METERED_MAX_PAGE_COUNT)
+                : requestedPageCount;
+    }
+
+    /**
+     * Registers for changes of any network able to reach the internet.
+     */
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private void registerNetworkCallback() {
+        networkCallback = new ConnectivityManager.NetworkCallback() {
+            @Override
+            public void onAvailable(Network network) {
+                postNetworkChanged();
+            }
+
+            @Override
+            public void onCapabilitiesChanged(Network network,
+                                              NetworkCapabilities networkCapabilities) {
+                postNetworkChanged();
+            }
+
+            @Override
+            public void onLost(Network network) {
+                postNetworkChanged();
+            }
+        };
+        NetworkRequest request = new NetworkRequest.Builder()
+                .addCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+                .build();
+        connectivityManager.registerNetworkCallback(request, networkCallback);
+    }
+
+    /**
+     * Network callbacks arrive on a system thread; handle them on the main thread.
+     */
+    private void postNetworkChanged() {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (started) {
+                    onNetworkChanged();
+                }
+            }
+        });
+    }
+
+    /**
+     * Refreshes the network state and runs the pending loads if the device is online.
+     */
+    private void onNetworkChanged() {
+        updateNetworkState();
+        if (!connected || pendingLoads.isEmpty()) {
+            return;
+        }
+        List<Runnable> loads = new ArrayList<Runnable>(pendingLoads);
+        pendingLoads.clear();
+        for (Runnable load : loads) {
+            load.run();
+        }
+    }
+
+    /**
+     * Queries the {@link ConnectivityManager} for the state of the active network.
+     */
+    private void updateNetworkState() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            Network activeNetwork = connectivityManager.getActiveNetwork();
+            NetworkCapabilities capabilities = activeNetwork == null ? null
+                    : connectivityManager.getNetworkCapabilities(activeNetwork);
+            connected = capabilities != null
+                    && capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+                    && capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_VALIDATED);
+        } else {
+            NetworkInfo networkInfo = connectivityManager.getActiveNetworkInfo();
+            connected = networkInfo != null && networkInfo.isConnected();
+        }
+        metered = connected && connectivityManager.isActiveNetworkMetered();
+    }
+}
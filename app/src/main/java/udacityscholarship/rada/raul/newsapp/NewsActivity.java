@@ -1,13 +1,11 @@
 package udacityscholarship.rada.raul.newsapp;
 
 import android.app.LoaderManager;
-import android.content.Context;
 import android.content.Intent;
 import android.content.Loader;
 import android.content.SharedPreferences;
-import android.net.ConnectivityManager;
-import android.net.NetworkInfo;
 import android.net.Uri;
+import android.os.AsyncTask;
 import android.preference.PreferenceManager;
 import android.support.v7.app.AppCompatActivity;
 import android.os.Bundle;
@@ -19,10 +17,13 @@ import android.widget.AdapterView;
 import android.widget.ListView;
 import android.widget.TextView;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
-public class NewsActivity extends AppCompatActivity implements LoaderManager.LoaderCallbacks<List<Article>> {
+public class NewsActivity extends AppCompatActivity implements LoaderManager.LoaderCallbacks<List<Article>>,
+        SharedPreferences.OnSharedPreferenceChangeListener {
 
     /**
      * Tag for the log messages
@@ -60,10 +61,6 @@ public class NewsActivity extends AppCompatActivity implements LoaderManager.Loa
      * show-tags value for articles retrieved from the Guardian API
      */
     private static final String GUARDIAN_API_SHOW_TAGS_VALUE = "contributor";
-    /**
-     * page-size key for the Guardian API
-     */
-    private static final String GUARDIAN_API_PAGE_SIZE_KEY = "page-size";
     /**
      * show-tags key for the Guardian API
      */
@@ -85,6 +82,18 @@ public class NewsActivity extends AppCompatActivity implements LoaderManager.Loa
      * This really only comes into play if you're using multiple loaders.
      */
     private static final int ARTICLE_LOADER_ID = 1;
+    /**
+     * Name of the file in which the read history is kept
+     */
+    private static final String READ_HISTORY_FILE_NAME = "read_history.bin";
+    /**
+     * Maximum number of opened articles remembered by the read history
+     */
+    private static final int READ_HISTORY_MAX_ENTRIES = 200000;
+    /**
+     * History of the opened articles, shared by every instance of the activity
+     */
+    private static ReadHistory readHistory;
     /**
      * TextView displayed when the ListView is empty
      */
@@ -93,6 +102,23 @@ public class NewsActivity extends AppCompatActivity implements LoaderManager.Loa
      * adapter for the list of Articles
      */
     private ArticleAdapter articleAdapter;
+    /**
+     * monitor of the network state, holding back loads while the device is offline
+     */
+    private NetworkMonitor networkMonitor;
+    /**
+     * loaded Articles, re-sorted locally when the order preference changes, or null
+     */
+    private ArticleQueryEngine loadedArticles;
+    /**
+     * reloads the articles after a load failed for lack of network
+     */
+    private final Runnable reloadArticlesTask = new Runnable() {
+        @Override
+        public void run() {
+            loadArticles(true);
+        }
+    };
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -112,6 +138,35 @@ public class NewsActivity extends AppCompatActivity implements LoaderManager.Loa
         // so the list can be populated in the user interface
         articlesListView.setAdapter(articleAdapter);
 
+        // Dim the articles already opened, once their history has been read from storage
+        if (readHistory == null) {
+            readHistory = new ReadHistory(new File(getFilesDir(), READ_HISTORY_FILE_NAME),
+                    READ_HISTORY_MAX_ENTRIES);
+        }
+        articleAdapter.setReadHistory(readHistory);
+        if (!readHistory.isLoaded()) {
+            AsyncTask.SERIAL_EXECUTOR.execute(new Runnable() {
+                @Override
+                public void run() {
+                    readHistory.load();
+                    runOnUiThread(new Runnable() {
+                        @Override
+                        public void run() {
+                            articleAdapter.notifyDataSetChanged();
+                        }
+                    });
+                }
+            });
+        }
+
+        // In debug builds, log bind and frame timings each time the list stops scrolling
+        if (BuildConfig.DEBUG) {
+            ScrollPerformanceMonitor performanceMonitor = new ScrollPerformanceMonitor(
+                    getWindowManager().getDefaultDisplay().getRefreshRate());
+            articleAdapter.setPerformanceMonitor(performanceMonitor);
+            articlesListView.setOnScrollListener(performanceMonitor);
+        }
+
         // click listener for ListView items
         articlesListView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
             @Override
@@ -120,6 +175,10 @@ public class NewsActivity extends AppCompatActivity implements LoaderManager.Loa
                 //get the Article that was clicked on in the ListView
                 Article currentArticle = articleAdapter.getItem(position);
 
+                // remember the Article has been opened and dim it
+                readHistory.markRead(currentArticle.getArticleUrl());
+                view.setAlpha(ArticleAdapter.READ_ARTICLE_ALPHA);
+
                 //convert the String Article URL into an Uri object, used to pass into Intent constructor
                 Uri articleUri = Uri.parse(currentArticle.getArticleUrl());
 
@@ -131,49 +190,150 @@ public class NewsActivity extends AppCompatActivity implements LoaderManager.Loa
             }
         });
 
-        // Get a reference to the ConnectivityManager to check state of network connectivity
-        ConnectivityManager connMgr = (ConnectivityManager)
-                getSystemService(Context.CONNECTIVITY_SERVICE);
+        // Re-order the articles when the user changes the preferences
+        PreferenceManager.getDefaultSharedPreferences(this)
+                .registerOnSharedPreferenceChangeListener(this);
+
+        // Follow the network state, so articles are loaded as soon as the device is online
+        networkMonitor = new NetworkMonitor(this);
+        if (!networkMonitor.isConnected()) {
+            showNoInternetConnection();
+        }
+        networkMonitor.runWhenConnected(new Runnable() {
+            @Override
+            public void run() {
+                loadArticles(false);
+            }
+        });
+    }
 
-        // Get details on the currently active default data network
-        NetworkInfo networkInfo = connMgr.getActiveNetworkInfo();
+    @Override
+    protected void onStart() {
+        super.onStart();
+        networkMonitor.start();
+    }
 
-        // If there is a network connection, fetch data
-        if (networkInfo != null && networkInfo.isConnected()) {
-            // Get a reference to the LoaderManager, in order to interact with loaders.
-            LoaderManager loaderManager = getLoaderManager();
+    @Override
+    protected void onStop() {
+        networkMonitor.stop();
 
-            // Initialize the loader. Pass in the int ID constant defined above and pass in null for
-            // the bundle. Pass in this activity for the LoaderCallbacks parameter (which is valid
-            // because this activity implements the LoaderCallbacks interface).
-            loaderManager.initLoader(ARTICLE_LOADER_ID, null, this);
-        } else {
-            // Otherwise, display error
-            // First, hide loading indicator so error message will be visible
-            View loadingIndicator = findViewById(R.id.loading_indicator);
-            loadingIndicator.setVisibility(View.GONE);
+        // Persist the read history off the main thread
+        AsyncTask.SERIAL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    readHistory.save();
+                } catch (IOException e) {
+                    Log.e(LOG_TAG, "Problem saving the read history.", e);
+                }
+            }
+        });
+        super.onStop();
+    }
 
-            // Update empty state with no connection error message
-            emptyTextView.setText(R.string.no_internet_connection);
-        }
+    @Override
+    protected void onDestroy() {
+        PreferenceManager.getDefaultSharedPreferences(this)
+                .unregisterOnSharedPreferenceChangeListener(this);
+        super.onDestroy();
     }
 
-    //method implementation inspired by Udacity code at https://github.com/udacity/ud843-QuakeReport/blob/30a05f980f2cb404b324b96bcc8e6b29c248ea16/app/src/main/java/com/example/android/quakereport/EarthquakeActivity.java
+    /**
+     * Shows the articles in the new order or number chosen by the user. The loaded articles are
+     * re-sorted in memory when they are known to match what the API would return, otherwise
+     * they are loaded again.
+     */
     @Override
-    public Loader<List<Article>> onCreateLoader(int i, Bundle bundle) {
-        //Create SharedPreferences object for retrieving user's preferences
-        SharedPreferences sharedPreferences = PreferenceManager.getDefaultSharedPreferences(this);
+    public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+        if (!key.equals(getString(R.string.settings_order_by_key))
+                && !key.equals(getString(R.string.settings_max_number_articles_key))) {
+            return;
+        }
+        String orderBy = getOrderBy(sharedPreferences);
+        int maxNumberArticles = getMaxNumberArticles(sharedPreferences);
+        if (loadedArticles != null && loadedArticles.canAnswer(orderBy, maxNumberArticles)) {
+            articleAdapter.clear();
+            articleAdapter.addAll(loadedArticles.query(orderBy, maxNumberArticles));
+            return;
+        }
+        ArticleLoader articleLoader =
+                (ArticleLoader) getLoaderManager().<List<Article>>getLoader(ARTICLE_LOADER_ID);
+        if (articleLoader == null || !articleLoader.matches(orderBy, maxNumberArticles)) {
+            networkMonitor.runWhenConnected(reloadArticlesTask);
+        }
+    }
 
+    /**
+     * @return order-by value selected by the user in the preferences section
+     */
+    private String getOrderBy(SharedPreferences sharedPreferences) {
+        return sharedPreferences.getString(
+                getString(R.string.settings_order_by_key),
+                getString(R.string.settings_order_by_default));
+    }
+
+    /**
+     * @return maximum number of articles selected by the user in the preferences section
+     */
+    private int getMaxNumberArticles(SharedPreferences sharedPreferences) {
         //Retrieve String value containing the maximum number of articles selected by user in the
         //preferences section; the second value is the default value for the maximum number of
         //{@link Articles} to be displayed
         String maxNumberArticles = sharedPreferences.getString(
                 getString(R.string.settings_max_number_articles_key),
                 getString(R.string.settings_max_number_articles_default));
+        try {
+            return Integer.parseInt(maxNumberArticles.trim());
+        } catch (NumberFormatException e) {
+            Log.e(LOG_TAG, "Invalid maximum number of articles: " + maxNumberArticles, e);
+            return Integer.parseInt(getString(R.string.settings_max_number_articles_default));
+        }
+    }
 
-        String orderBy = sharedPreferences.getString(
-                getString(R.string.settings_order_by_key),
-                getString(R.string.settings_order_by_default));
+    /**
+     * Starts loading the articles, showing the loading indicator meanwhile
+     *
+     * @param reload true to discard the result of a previous load
+     */
+    private void loadArticles(boolean reload) {
+        View loadingIndicator = findViewById(R.id.loading_indicator);
+        loadingIndicator.setVisibility(View.VISIBLE);
+        emptyTextView.setText("");
+
+        // Get a reference to the LoaderManager, in order to interact with loaders.
+        LoaderManager loaderManager = getLoaderManager();
+
+        // Initialize the loader, or restart it if a previous load failed for lack of network.
+        // Pass in the int ID constant defined above and pass in null for the bundle. Pass in this
+        // activity for the LoaderCallbacks parameter (which is valid because this activity
+        // implements the LoaderCallbacks interface).
+        if (reload) {
+            loaderManager.restartLoader(ARTICLE_LOADER_ID, null, this);
+        } else {
+            loaderManager.initLoader(ARTICLE_LOADER_ID, null, this);
+        }
+    }
+
+    /**
+     * Replaces the loading indicator with the no connection error message
+     */
+    private void showNoInternetConnection() {
+        // First, hide loading indicator so error message will be visible
+        View loadingIndicator = findViewById(R.id.loading_indicator);
+        loadingIndicator.setVisibility(View.GONE);
+
+        // Update empty state with no connection error message
+        emptyTextView.setText(R.string.no_internet_connection);
+    }
+
+    //method implementation inspired by Udacity code at https://github.com/udacity/ud843-QuakeReport/blob/30a05f980f2cb404b324b96bcc8e6b29c248ea16/app/src/main/java/com/example/android/quakereport/EarthquakeActivity.java
+    @Override
+    public Loader<List<Article>> onCreateLoader(int i, Bundle bundle) {
+        //Create SharedPreferences object for retrieving user's preferences
+        SharedPreferences sharedPreferences = PreferenceManager.getDefaultSharedPreferences(this);
+
+        int maxNumberArticles = getMaxNumberArticles(sharedPreferences);
+        String orderBy = getOrderBy(sharedPreferences);
 
         // parse breaks apart the URI string that is passed into its parameter
         Uri baseUri = Uri.parse(GUARDIAN_REQUEST_URL);
@@ -186,16 +346,25 @@ public class NewsActivity extends AppCompatActivity implements LoaderManager.Loa
         uriBuilder.appendQueryParameter(GUARDIAN_API_ORDER_BY_KEY, orderBy);
         uriBuilder.appendQueryParameter(GUARDIAN_API_FROM_DATE_KEY, GUARDIAN_API_FROM_DATE_VALUE);
         uriBuilder.appendQueryParameter(GUARDIAN_API_SHOW_TAGS_KEY, GUARDIAN_API_SHOW_TAGS_VALUE);
-        uriBuilder.appendQueryParameter(GUARDIAN_API_PAGE_SIZE_KEY, maxNumberArticles);
         uriBuilder.appendQueryParameter(GUARDIAN_API_QUERY_KEY, GUARDIAN_API_QUERY_VALUE);
         uriBuilder.appendQueryParameter(GUARDIAN_API_KEY, GUARDIAN_API_KEY_VALUE);
 
-        // Create a new loader for the completed URI
-        return new ArticleLoader(this, uriBuilder.toString());
+        // Create a new loader for the completed URI; the loader adds the paging parameters,
+        // requesting fewer and smaller pages on metered networks such as cellular
+        return new ArticleLoader(this, uriBuilder.toString(), orderBy, maxNumberArticles,
+                networkMonitor.getPageSize(ArticleLoader.MAX_PAGE_SIZE),
+                networkMonitor.getPageCount(ArticleLoader.MAX_PAGE_COUNT));
     }
 
     @Override
     public void onLoadFinished(Loader<List<Article>> loader, List<Article> articles) {
+        // If the connection dropped during the load, retry once the device is back online
+        if (articles == null && !networkMonitor.isConnected()) {
+            showNoInternetConnection();
+            networkMonitor.runWhenConnected(reloadArticlesTask);
+            return;
+        }
+
         // Hide loading indicator because the data has been loaded
         View loadingIndicator = findViewById(R.id.loading_indicator);
         loadingIndicator.setVisibility(View.GONE);
@@ -206,10 +375,30 @@ public class NewsActivity extends AppCompatActivity implements LoaderManager.Loa
         // Clear the adapter of previous article data
         articleAdapter.clear();
 
-        // If there is a valid list of {@link Article} objectss, then add them to the adapter's
-        // data set. This will trigger the ListView to update.
-        if (articles != null && !articles.isEmpty()) {
+        // Keep the loaded articles, so later changes of order can be answered without the network
+        loadedArticles = null;
+        if (articles == null) {
+            return;
+        }
+        ArticleLoader articleLoader = (ArticleLoader) loader;
+        loadedArticles = new ArticleQueryEngine(articles, articleLoader.getOrderBy(),
+                articleLoader.isComplete());
+
+        // The loader delivers its articles again after the settings or a rotation, in the order
+        // they were requested; show them in the order currently chosen by the user, or replace
+        // the loader if its query no longer matches the preferences.
+        SharedPreferences sharedPreferences = PreferenceManager.getDefaultSharedPreferences(this);
+        String orderBy = getOrderBy(sharedPreferences);
+        int maxNumberArticles = getMaxNumberArticles(sharedPreferences);
+        if (loadedArticles.canAnswer(orderBy, maxNumberArticles)) {
+            // If there is a valid list of {@link Article} objectss, then add them to the
+            // adapter's data set. This will trigger the ListView to update.
+            articleAdapter.addAll(loadedArticles.query(orderBy, maxNumberArticles));
+        } else {
             articleAdapter.addAll(articles);
+            if (!articleLoader.matches(orderBy, maxNumberArticles)) {
+                networkMonitor.runWhenConnected(reloadArticlesTask);
+            }
         }
     }
 
@@ -217,6 +406,7 @@ public class NewsActivity extends AppCompatActivity implements LoaderManager.Loa
     public void onLoaderReset(Loader<List<Article>> loader) {
         // Loader reset, so we can clear out our existing data.
         articleAdapter.clear();
+        loadedArticles = null;
     }
 
     /**
@@ -0,0 +1,341 @@
+package udacityscholarship.rada.raul.newsapp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Remembers which {@link Article} objects the user has opened, by 64-bit hash of their URL.
+ * Hashes live in two generations of {@link LongHashSet}: once the current generation is full, it
+ * becomes the previous one and the oldest generation is dropped, so the history never exceeds
+ * its maximum size and articles opened long ago are forgotten first. A Bloom filter over both
+ * generations answers most lookups of unread articles without probing the sets.
+ * The history is stored in a flat file of hashes, read by {@link #load()} on first use and
+ * written back by {@link #save()}; both should run off the main thread. Until it is loaded,
+ * every article is reported as unread.
+ */
+public class ReadHistory {
+
+    /**
+     * marks the start of a read history file
+     */
+    private static final int FILE_MAGIC = 0x52484953;
+
+    /**
+     * version of the read history file layout
+     */
+    private static final int FILE_VERSION = 1;
+
+    /**
+     * number of bits of the Bloom filter per URL hash it holds
+     */
+    private static final int BLOOM_BITS_PER_ENTRY = 10;
+
+    /**
+     * number of bits set per URL hash in the Bloom filter, optimal for 10 bits per entry
+     */
+    private static final int BLOOM_HASH_COUNT = 7;
+
+    /**
+     * number of URL hashes a new generation holds before growing towards its maximum size, so a
+     * short history does not cost the memory of a full one
+     */
+    private static final int INITIAL_GENERATION_SIZE = 64;
+
+    /**
+     * file holding the history
+     */
+    private final File file;
+
+    /**
+     * maximum number of URL hashes held by one generation
+     */
+    private final int generationCapacity;
+
+    /**
+     * URL hashes of the articles opened most recently
+     */
+    private LongHashSet currentGeneration;
+
+    /**
+     * URL hashes of the articles opened before the current generation started
+     */
+    private LongHashSet previousGeneration;
+
+    /**
+     * Bloom filter over both generations
+     */
+    private final long[] bloomBits;
+
+    /**
+     * true once the file has been read
+     */
+    private volatile boolean loaded;
+
+    /**
+     * true if the history changed since it was last saved
+     */
+    private boolean dirty;
+
+    /**
+     * {@link ReadHistory} constructor
+     *
+     * @param file       file holding the history
+     * @param maxEntries maximum number of articles remembered
+     */
+    public ReadHistory(File file, int maxEntries) {
+        this.file = file;
+        this.generationCapacity = Math.max(1, maxEntries / 2);
+        this.currentGeneration = new LongHashSet(INITIAL_GENERATION_SIZE);
+        this.previousGeneration = new LongHashSet(0);
+        long bloomBitCount = (long) maxEntries * BLOOM_BITS_PER_ENTRY;
+        this.bloomBits = new long[(int) Math.max(1, (bloomBitCount + 63) / 64)];
+    }
+
+    /**
+     * @return 64-bit FNV-1a hash of the given URL, never 0
+     */
+    static long hashUrl(String url) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < url.length(); i++) {
+            hash ^= url.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash == 0 ? 1 : hash;
+    }
+
+    /**
+     * @return true if the article at the given URL has been opened; always false until the
+     * history is loaded
+     */
+    public boolean isRead(String url) {
+        if (!loaded || url == null) {
+            return false;
+        }
+        long hash = hashUrl(url);
+        synchronized (this) {
+            return bloomMightContain(hash)
+                    && (currentGeneration.contains(hash) || previousGeneration.contains(hash));
+        }
+    }
+
+    /**
+     * Records that the article at the given URL has been opened.
+     */
+    public synchronized void markRead(String url) {
+        if (url == null) {
+            return;
+        }
+        addHash(hashUrl(url));
+        dirty = true;
+    }
+
+    /**
+     * @return true once the history has been read from its file
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Reads the history from its file, keeping the articles marked read in the meantime.
+     * Does nothing if the history is already loaded. Call it off the main thread.
+     */
+    public void load() {
+        if (loaded) {
+            return;
+        }
+        DataInputStream input = null;
+        try {
+            input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (input.readInt() != FILE_MAGIC || input.readInt() != FILE_VERSION) {
+                throw new IOException("Not a read history file: " + file);
+            }
+            long[] previousHashes = readHashes(input);
+            long[] currentHashes = readHashes(input);
+            synchronized (this) {
+                // hashes marked read before loading are newer than anything in the file
+                long[] markedBeforeLoading = currentGeneration.toArray();
+                currentGeneration = new LongHashSet(
+                        Math.max(INITIAL_GENERATION_SIZE, previousHashes.length));
+                previousGeneration = new LongHashSet(0);
+                clearBloom();
+                for (long hash : previousHashes) {
+                    addHash(hash);
+                }
+                rotate();
+                for (long hash : currentHashes) {
+                    addHash(hash);
+                }
+                for (long hash : markedBeforeLoading) {
+                    addHash(hash);
+                }
+            }
+        } catch (FileNotFoundException e) {
+            // nothing has been read yet
+        } catch (IOException e) {
+            // a damaged history is dropped rather than blocking the list
+        } finally {
+            closeQuietly(input);
+            loaded = true;
+        }
+    }
+
+    /**
+     * Writes the history to its file if it changed since the last save. The file is replaced
+     * atomically, so an interrupted save leaves the previous history intact.
+     * Call it off the main thread.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    public void save() throws IOException {
+        long[] previousHashes;
+        long[] currentHashes;
+        synchronized (this) {
+            if (!dirty || !loaded) {
+                return;
+            }
+            previousHashes = previousGeneration.toArray();
+            currentHashes = currentGeneration.toArray();
+            dirty = false;
+        }
+
+        File temporaryFile = new File(file.getPath() + ".tmp");
+        DataOutputStream output = null;
+        try {
+            output = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(temporaryFile)));
+            output.writeInt(FILE_MAGIC);
+            output.writeInt(FILE_VERSION);
+            output.writeInt(previousHashes.length);
+            for (long hash : previousHashes) {
+                output.writeLong(hash);
+            }
+            output.writeInt(currentHashes.length);
+            for (long hash : currentHashes) {
+                output.writeLong(hash);
+            }
+            output.close();
+            output = null;
+            if (!temporaryFile.renameTo(file)) {
+                throw new IOException("Cannot replace " + file);
+            }
+        } catch (IOException e) {
+            synchronized (this) {
+                dirty = true;
+            }
+            throw e;
+        } finally {
+            closeQuietly(output);
+        }
+    }
+
+    /**
+     * @return number of articles remembered
+     */
+    public synchronized int size() {
+        return currentGeneration.size() + previousGeneration.size();
+    }
+
+    /**
+     * Adds a hash to the current generation, starting a new generation first if it is full.
+     * Must be called while holding the lock.
+     */
+    private void addHash(long hash) {
+        if (currentGeneration.contains(hash)) {
+            return;
+        }
+        if (currentGeneration.size() >= generationCapacity) {
+            rotate();
+        }
+        currentGeneration.add(hash);
+        bloomAdd(hash);
+    }
+
+    /**
+     * Drops the previous generation and starts a new, empty current one, rebuilding the Bloom
+     * filter so dropped hashes no longer pass it. Must be called while holding the lock.
+     */
+    private void rotate() {
+        previousGeneration = currentGeneration;
+        currentGeneration = new LongHashSet(INITIAL_GENERATION_SIZE);
+        clearBloom();
+        for (long hash : previousGeneration.toArray()) {
+            bloomAdd(hash);
+        }
+    }
+
+    /**
+     * Sets the bits of the given hash in the Bloom filter.
+     */
+    private void bloomAdd(long hash) {
+        long bitCount = bloomBits.length * 64L;
+        int first = (int) hash;
+        int second = (int) (hash >>> 32);
+        for (int i = 0; i < BLOOM_HASH_COUNT; i++) {
+            long bit = ((first + (long) i * second) & Long.MAX_VALUE) % bitCount;
+            bloomBits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    /**
+     * @return false if the given hash is certainly not in the history
+     */
+    private boolean bloomMightContain(long hash) {
+        long bitCount = bloomBits.length * 64L;
+        int first = (int) hash;
+        int second = (int) (hash >>> 32);
+        for (int i = 0; i < BLOOM_HASH_COUNT; i++) {
+            long bit = ((first + (long) i * second) & Long.MAX_VALUE) % bitCount;
+            if ((bloomBits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Clears every bit of the Bloom filter.
+     */
+    private void clearBloom() {
+        for (int i = 0; i < bloomBits.length; i++) {
+            bloomBits[i] = 0;
+        }
+    }
+
+    /**
+     * @return hashes read from the stream, preceded by their count
+     */
+    private long[] readHashes(DataInputStream input) throws IOException {
+        int count = input.readInt();
+        if (count < 0 || count * 8L > file.length()) {
+            throw new IOException("Invalid hash count " + count);
+        }
+        long[] hashes = new long[count];
+        for (int i = 0; i < count; i++) {
+            hashes[i] = input.readLong();
+        }
+        return hashes;
+    }
+
+    /**
+     * Closes the given stream, ignoring failures.
+     */
+    private static void closeQuietly(Closeable stream) {
+        if (stream == null) {
+            return;
+        }
+        try {
+            stream.close();
+        } catch (IOException e) {
+            // nothing left to do with the stream
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package udacityscholarship.rada.raul.newsapp;
+
+import android.util.Log;
+import android.view.Choreographer;
+import android.widget.AbsListView;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects UI performance data for the list of {@link Article} objects: how long
+ * {@link ArticleAdapter} takes to bind each row, how many rows are inflated rather than recycled
+ * through the ViewHolder path, and the duration of every frame rendered while the list scrolls.
+ * Set it as the {@link AbsListView.OnScrollListener} of the list, so frames are only timed while
+ * the list moves. All recording happens on the main thread; {@link #getReport()} may be called
+ * from any thread.
+ */
+public class ScrollPerformanceMonitor implements AbsListView.OnScrollListener,
+        Choreographer.FrameCallback {
+
+    /**
+     * Tag for the log messages
+     */
+    private static final String LOG_TAG = ScrollPerformanceMonitor.class.getSimpleName();
+
+    /**
+     * a frame counts as janky once it takes this many times the frame budget
+     */
+    private static final double JANK_THRESHOLD = 1.5;
+
+    /**
+     * time available to render one frame at the refresh rate of the display
+     */
+    private final long frameBudgetNanos;
+
+    /**
+     * number of rows provided by {@link ArticleAdapter#getView}
+     */
+    private int bindCount;
+
+    /**
+     * number of rows which had to be inflated
+     */
+    private int inflateCount;
+
+    /**
+     * time spent providing rows, summed over all binds
+     */
+    private long totalBindNanos;
+
+    /**
+     * longest time taken to provide a single row
+     */
+    private long maxBindNanos;
+
+    /**
+     * number of frames rendered while the list scrolled
+     */
+    private int frameCount;
+
+    /**
+     * number of frames exceeding the jank threshold
+     */
+    private int jankyFrameCount;
+
+    /**
+     * number of frames skipped by the janky frames
+     */
+    private int droppedFrameCount;
+
+    /**
+     * duration of the frames rendered while scrolling, summed
+     */
+    private long totalFrameNanos;
+
+    /**
+     * duration of the longest frame rendered while scrolling
+     */
+    private long maxFrameNanos;
+
+    /**
+     * vsync time of the previous frame, or 0 if no frame was seen since the scroll started
+     */
+    private long lastFrameTimeNanos;
+
+    /**
+     * true while frame callbacks are posted to the {@link Choreographer}
+     */
+    private boolean trackingFrames;
+
+    /**
+     * {@link ScrollPerformanceMonitor} constructor
+     *
+     * @param refreshRate refresh rate of the display, in frames per second
+     */
+    public ScrollPerformanceMonitor(float refreshRate) {
+        frameBudgetNanos = (long) (TimeUnit.SECONDS.toNanos(1) / refreshRate);
+    }
+
+    /**
+     * Records a call to {@link ArticleAdapter#getView}.
+     *
+     * @param durationNanos time taken to provide the row
+     * @param inflated      true if the row had to be inflated, false if a view was recycled
+     */
+    public synchronized void recordBind(long durationNanos, boolean inflated) {
+        bindCount++;
+        if (inflated) {
+            inflateCount++;
+        }
+        totalBindNanos += durationNanos;
+        maxBindNanos = Math.max(maxBindNanos, durationNanos);
+    }
+
+    @Override
+    public void onScrollStateChanged(AbsListView view, int scrollState) {
+        if (scrollState != SCROLL_STATE_IDLE) {
+            if (!trackingFrames) {
+                trackingFrames = true;
+                lastFrameTimeNanos = 0;
+                Choreographer.getInstance().postFrameCallback(this);
+            }
+        } else if (trackingFrames) {
+            trackingFrames = false;
+            Choreographer.getInstance().removeFrameCallback(this);
+            Log.d(LOG_TAG, getReport().toString());
+        }
+    }
+
+    @Override
+    public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount,
+                         int totalItemCount) {
+        // frames are timed by doFrame, nothing to do per scroll step
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!trackingFrames) {
+            return;
+        }
+        if (lastFrameTimeNanos != 0) {
+            recordFrame(frameTimeNanos - lastFrameTimeNanos);
+        }
+        lastFrameTimeNanos = frameTimeNanos;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    /**
+     * Records the time elapsed between two consecutive frames.
+     */
+    private synchronized void recordFrame(long frameNanos) {
+        frameCount++;
+        totalFrameNanos += frameNanos;
+        maxFrameNanos = Math.max(maxFrameNanos, frameNanos);
+        if (frameNanos > frameBudgetNanos * JANK_THRESHOLD) {
+            jankyFrameCount++;
+            droppedFrameCount += (int) (frameNanos / frameBudgetNanos) - 1;
+        }
+    }
+
+    /**
+     * Clears all the data recorded so far.
+     */
+    public synchronized void reset() {
+        bindCount = 0;
+        inflateCount = 0;
+        totalBindNanos = 0;
+        maxBindNanos = 0;
+        frameCount = 0;
+        jankyFrameCount = 0;
+        droppedFrameCount = 0;
+        totalFrameNanos = 0;
+        maxFrameNanos = 0;
+    }
+
+    /**
+     * @return snapshot of the data recorded so far
+     */
+    public synchronized Report getReport() {
+        return new Report(bindCount, inflateCount, totalBindNanos, maxBindNanos, frameCount,
+                jankyFrameCount, droppedFrameCount, totalFrameNanos, maxFrameNanos);
+    }
+
+    /**
+     * Immutable snapshot of the data recorded by a {@link ScrollPerformanceMonitor}.
+     */
+    public static final class Report {
+
+        /**
+         * number of rows provided by {@link ArticleAdapter#getView}
+         */
+        public final int bindCount;
+
+        /**
+         * number of rows which had to be inflated
+         */
+        public final int inflateCount;
+
+        /**
+         * number of rows bound to a recycled view
+         */
+        public final int reuseCount;
+
+        /**
+         * average time taken to provide a row
+         */
+        public final long averageBindNanos;
+
+        /**
+         * longest time taken to provide a single row
+         */
+        public final long maxBindNanos;
+
+        /**
+         * number of frames rendered while the list scrolled
+         */
+        public final int frameCount;
+
+        /**
+         * number of frames exceeding the jank threshold
+         */
+        public final int jankyFrameCount;
+
+        /**
+         * number of frames skipped by the janky frames
+         */
+        public final int droppedFrameCount;
+
+        /**
+         * average duration of a frame rendered while scrolling
+         */
+        public final long averageFrameNanos;
+
+        /**
+         * duration of the longest frame rendered while scrolling
+         */
+        public final long maxFrameNanos;
+
+        Report(int bindCount, int inflateCount, long totalBindNanos, long maxBindNanos,
+               int frameCount, int jankyFrameCount, int droppedFrameCount, long totalFrameNanos,
+               long maxFrameNanos) {
+            this.bindCount = bindCount;
+            this.inflateCount = inflateCount;
+            this.reuseCount = bindCount - inflateCount;
+            this.averageBindNanos = bindCount == 0 ? 0 : totalBindNanos / bindCount;
+            this.maxBindNanos = maxBindNanos;
+            this.frameCount = frameCount;
+            this.jankyFrameCount = jankyFrameCount;
+            this.droppedFrameCount = droppedFrameCount;
+            this.averageFrameNanos = frameCount == 0 ? 0 : totalFrameNanos / frameCount;
+            this.maxFrameNanos = maxFrameNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "binds=" + bindCount
+                    + " (inflated=" + inflateCount + ", reused=" + reuseCount + ")"
+                    + " avgBindUs=" + TimeUnit.NANOSECONDS.toMicros(averageBindNanos)
+                    + " maxBindUs=" + TimeUnit.NANOSECONDS.toMicros(maxBindNanos)
+                    + " frames=" + frameCount
+                    + " janky=" + jankyFrameCount
+                    + " dropped=" + droppedFrameCount
+                    + " avgFrameMs=" + TimeUnit.NANOSECONDS.toMillis(averageFrameNanos)
+                    + " maxFrameMs=" + TimeUnit.NANOSECONDS.toMillis(maxFrameNanos);
+        }
+    }
+}
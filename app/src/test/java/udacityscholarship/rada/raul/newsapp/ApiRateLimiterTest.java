@@ -0,0 +1,95 @@
+package udacityscholarship.rada.raul.newsapp;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of {@link ApiRateLimiter}. Timings are only checked as lower bounds, which a
+ * slow machine cannot break.
+ */
+public class ApiRateLimiterTest {
+
+    @Test
+    public void burstTokensAreHandedOutAtOnce() throws Exception {
+        ApiRateLimiter rateLimiter = new ApiRateLimiter(0.1, 3, 100);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(rateLimiter.acquire());
+        }
+        assertEquals(97, rateLimiter.getRemainingDailyQuota());
+    }
+
+    @Test
+    public void tokensRefillAtThePermittedRate() throws Exception {
+        ApiRateLimiter rateLimiter = new ApiRateLimiter(20, 1, 100);
+        assertTrue(rateLimiter.acquire());
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 4; i++) {
+            assertTrue(rateLimiter.acquire());
+        }
+        // four tokens at 20 per second take 200ms to refill
+        assertTrue(elapsedMillis(start) >= 190);
+    }
+
+    @Test
+    public void dailyQuotaCutsOffRequests() throws Exception {
+        ApiRateLimiter rateLimiter = new ApiRateLimiter(1000, 10, 2);
+        assertTrue(rateLimiter.acquire());
+        assertTrue(rateLimiter.acquire());
+        assertFalse(rateLimiter.acquire());
+        assertEquals(0, rateLimiter.getRemainingDailyQuota());
+    }
+
+    @Test
+    public void reportedQuotaReplacesLocalCount() throws Exception {
+        ApiRateLimiter rateLimiter = new ApiRateLimiter(1000, 10, 500);
+        rateLimiter.onResponse(200, "5000", "1", "59", null);
+        assertEquals(5000, rateLimiter.getDailyLimit());
+        assertEquals(1, rateLimiter.getRemainingDailyQuota());
+
+        assertTrue(rateLimiter.acquire());
+        rateLimiter.onResponse(200, "5000", "0", "58", null);
+        assertFalse(rateLimiter.acquire());
+    }
+
+    @Test
+    public void malformedHeadersAreIgnored() {
+        ApiRateLimiter rateLimiter = new ApiRateLimiter(1000, 10, 500);
+        rateLimiter.onResponse(200, "lots", "-3", " ", "soon");
+        assertEquals(500, rateLimiter.getDailyLimit());
+        assertEquals(500, rateLimiter.getRemainingDailyQuota());
+
+        rateLimiter.onResponse(200, " 800 ", null, null, null);
+        assertEquals(800, rateLimiter.getDailyLimit());
+    }
+
+    @Test
+    public void tooManyRequestsBacksOff() throws Exception {
+        ApiRateLimiter rateLimiter = new ApiRateLimiter(1000, 10, 500);
+        rateLimiter.onResponse(429, null, null, null, null);
+
+        long start = System.nanoTime();
+        assertTrue(rateLimiter.acquire());
+        assertTrue(elapsedMillis(start) >= 950);
+    }
+
+    @Test
+    public void retryAfterLongerThanBackOffIsHonoured() throws Exception {
+        ApiRateLimiter rateLimiter = new ApiRateLimiter(1000, 10, 500);
+        rateLimiter.onResponse(429, null, null, null, "2");
+
+        long start = System.nanoTime();
+        assertTrue(rateLimiter.acquire());
+        assertTrue(elapsedMillis(start) >= 1950);
+    }
+
+    /**
+     * @return milliseconds elapsed since the given System.nanoTime() value
+     */
+    private static long elapsedMillis(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+}
@@ -0,0 +1,96 @@
+package udacityscholarship.rada.raul.newsapp;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of {@link ArticleQueryEngine}.
+ */
+public class ArticleQueryEngineTest {
+
+    @Test
+    public void relevanceKeepsTheLoadedOrder() {
+        ArticleQueryEngine engine = new ArticleQueryEngine(
+                articles("b", 2, "a", 3, "c", 1), ArticleQueryEngine.ORDER_RELEVANCE, true);
+        assertEquals(Arrays.asList("b", "a", "c"),
+                titles(engine.query(ArticleQueryEngine.ORDER_RELEVANCE, 10)));
+    }
+
+    @Test
+    public void newestListsTheMostRecentFirstAndBreaksTiesByTitle() {
+        ArticleQueryEngine engine = new ArticleQueryEngine(
+                articles("c", 2, "a", 1, "b", 2, "d", 3), ArticleQueryEngine.ORDER_RELEVANCE, true);
+        assertEquals(Arrays.asList("d", "b", "c", "a"),
+                titles(engine.query(ArticleQueryEngine.ORDER_NEWEST, 10)));
+    }
+
+    @Test
+    public void oldestListsTheLeastRecentFirst() {
+        ArticleQueryEngine engine = new ArticleQueryEngine(
+                articles("c", 2, "a", 1, "d", 3), ArticleQueryEngine.ORDER_NEWEST, true);
+        assertEquals(Arrays.asList("a", "c", "d"),
+                titles(engine.query(ArticleQueryEngine.ORDER_OLDEST, 10)));
+    }
+
+    @Test
+    public void queryReturnsAtMostCountArticles() {
+        ArticleQueryEngine engine = new ArticleQueryEngine(
+                articles("a", 1, "b", 2, "c", 3), ArticleQueryEngine.ORDER_NEWEST, true);
+        assertEquals(Arrays.asList("c", "b"),
+                titles(engine.query(ArticleQueryEngine.ORDER_NEWEST, 2)));
+        assertTrue(engine.query(ArticleQueryEngine.ORDER_NEWEST, 0).isEmpty());
+    }
+
+    @Test
+    public void incompleteSetOnlyAnswersItsOwnOrderUpToTheLoadedCount() {
+        ArticleQueryEngine engine = new ArticleQueryEngine(
+                articles("a", 1, "b", 2), ArticleQueryEngine.ORDER_NEWEST, false);
+        assertTrue(engine.canAnswer(ArticleQueryEngine.ORDER_NEWEST, 2));
+        assertFalse(engine.canAnswer(ArticleQueryEngine.ORDER_NEWEST, 3));
+        assertFalse(engine.canAnswer(ArticleQueryEngine.ORDER_OLDEST, 1));
+        assertFalse(engine.canAnswer(ArticleQueryEngine.ORDER_RELEVANCE, 1));
+    }
+
+    @Test
+    public void completeSetAnswersEveryOrderButRelevance() {
+        ArticleQueryEngine engine = new ArticleQueryEngine(
+                articles("a", 1, "b", 2), ArticleQueryEngine.ORDER_NEWEST, true);
+        assertTrue(engine.canAnswer(ArticleQueryEngine.ORDER_NEWEST, 50));
+        assertTrue(engine.canAnswer(ArticleQueryEngine.ORDER_OLDEST, 50));
+        assertFalse(engine.canAnswer(ArticleQueryEngine.ORDER_RELEVANCE, 1));
+    }
+
+    @Test
+    public void completeRelevanceSetAnswersRelevance() {
+        ArticleQueryEngine engine = new ArticleQueryEngine(
+                articles("a", 1), ArticleQueryEngine.ORDER_RELEVANCE, true);
+        assertTrue(engine.canAnswer(ArticleQueryEngine.ORDER_RELEVANCE, 50));
+    }
+
+    /**
+     * @param titlesAndTimes alternating titles and publication times
+     * @return {@link Article} objects with the given titles and publication times
+     */
+    private static List<Article> articles(Object... titlesAndTimes) {
+        List<Article> articles = new ArrayList<Article>();
+        for (int i = 0; i < titlesAndTimes.length; i += 2) {
+            String title = (String) titlesAndTimes[i];
+            articles.add(new Article(title, "section", "author", "date",
+                    "https://example.com/" + title, (Integer) titlesAndTimes[i + 1]));
+        }
+        return articles;
+    }
+
+    private static List<String> titles(List<Article> articles) {
+        List<String> titles = new ArrayList<String>();
+        for (Article article : articles) {
+            titles.add(article.getArticleTitle());
+        }
+        return titles;
+    }
+}
@@ -0,0 +1,229 @@
+package udacityscholarship.rada.raul.newsapp;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of {@link ArticleRequestScheduler}, using simulated requests instead of the
+ * network.
+ */
+public class ArticleRequestSchedulerTest {
+
+    private static final int WORKER_COUNT = 2;
+
+    /**
+     * duration of a simulated visible request
+     */
+    private static final long VISIBLE_WORK_MILLIS = 20;
+
+    /**
+     * duration of a simulated background request, long enough to dominate visible latency if
+     * visible requests had to wait for one
+     */
+    private static final long BACKGROUND_WORK_MILLIS = 300;
+
+    private ArticleRequestScheduler scheduler;
+
+    @Before
+    public void createScheduler() {
+        // a limiter loose enough to never throttle the simulated requests
+        ApiRateLimiter rateLimiter = new ApiRateLimiter(100000, 100000, Integer.MAX_VALUE);
+        scheduler = new ArticleRequestScheduler(rateLimiter, WORKER_COUNT, 1000);
+    }
+
+    @Test
+    public void visibleRequestsPreemptBackgroundRequestsHoldingEveryWorker() throws Exception {
+        // background requests which never finish by themselves, so a visible request can only
+        // run if one of them is preempted
+        CountDownLatch release = new CountDownLatch(1);
+        List<Future<String>> background = new ArrayList<Future<String>>();
+        for (int i = 0; i < 10; i++) {
+            background.add(scheduler.submit("background-" + i,
+                    ArticleRequestScheduler.PRIORITY_BACKGROUND,
+                    blockingRequest(release, "background-" + i)));
+        }
+        awaitActiveCount(WORKER_COUNT);
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals("visible-" + i, scheduler.submit("visible-" + i,
+                    ArticleRequestScheduler.PRIORITY_VISIBLE,
+                    simulatedRequest(VISIBLE_WORK_MILLIS, "visible-" + i))
+                    .get(5, TimeUnit.SECONDS));
+            for (Future<String> request : background) {
+                assertFalse(request.isDone());
+            }
+        }
+        assertTrue(scheduler.getPreemptedCount() >= 1);
+
+        release.countDown();
+        for (int i = 0; i < background.size(); i++) {
+            assertEquals("background-" + i, background.get(i).get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void preemptedBackgroundRequestsStillComplete() throws Exception {
+        List<Future<String>> background = new ArrayList<Future<String>>();
+        for (int i = 0; i < WORKER_COUNT; i++) {
+            background.add(scheduler.submit("background-" + i,
+                    ArticleRequestScheduler.PRIORITY_BACKGROUND,
+                    simulatedRequest(BACKGROUND_WORK_MILLIS, "background-" + i)));
+        }
+        Thread.sleep(50);
+        assertEquals("visible", scheduler.submit("visible",
+                ArticleRequestScheduler.PRIORITY_VISIBLE,
+                simulatedRequest(VISIBLE_WORK_MILLIS, "visible")).get(5, TimeUnit.SECONDS));
+
+        for (int i = 0; i < WORKER_COUNT; i++) {
+            assertEquals("background-" + i, background.get(i).get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, scheduler.getPreemptedCount());
+    }
+
+    @Test
+    public void queuedRequestsRunInPriorityOrder() throws Exception {
+        // a single worker, so completion order is dequeue order
+        scheduler = new ArticleRequestScheduler(
+                new ApiRateLimiter(100000, 100000, Integer.MAX_VALUE), 1, 1000);
+        final CountDownLatch release = new CountDownLatch(1);
+        scheduler.submit("blocker", ArticleRequestScheduler.PRIORITY_VISIBLE,
+                new ArticleRequestScheduler.Request<String>() {
+                    @Override
+                    public String execute(CancellationToken token) throws Exception {
+                        release.await();
+                        return "blocker";
+                    }
+                });
+        Thread.sleep(50);
+
+        final List<String> completionOrder = Collections.synchronizedList(new ArrayList<String>());
+        Future<String> background = scheduler.submit("background",
+                ArticleRequestScheduler.PRIORITY_BACKGROUND,
+                recordingRequest("background", completionOrder));
+        Future<String> prefetch = scheduler.submit("prefetch",
+                ArticleRequestScheduler.PRIORITY_PREFETCH,
+                recordingRequest("prefetch", completionOrder));
+        Future<String> visible = scheduler.submit("visible",
+                ArticleRequestScheduler.PRIORITY_VISIBLE,
+                recordingRequest("visible", completionOrder));
+        assertEquals(3, scheduler.getQueueDepth());
+
+        release.countDown();
+        background.get(5, TimeUnit.SECONDS);
+        prefetch.get(5, TimeUnit.SECONDS);
+        visible.get(5, TimeUnit.SECONDS);
+        assertEquals(Arrays.asList("visible", "prefetch", "background"), completionOrder);
+        assertEquals(0, scheduler.getPreemptedCount());
+    }
+
+    @Test
+    public void coalescedRequestIsOnlyCancelledByItsLastCaller() throws Exception {
+        Future<String> first = scheduler.submit("shared", ArticleRequestScheduler.PRIORITY_VISIBLE,
+                simulatedRequest(BACKGROUND_WORK_MILLIS, "shared"));
+        Future<String> second = scheduler.submit("shared",
+                ArticleRequestScheduler.PRIORITY_VISIBLE,
+                simulatedRequest(BACKGROUND_WORK_MILLIS, "other"));
+        assertSame(first, second);
+
+        scheduler.cancel(first);
+        assertFalse(second.isCancelled());
+        scheduler.cancel(second);
+        assertTrue(second.isCancelled());
+        try {
+            second.get();
+            fail("cancelled request returned a result");
+        } catch (CancellationException expected) {
+            assertEquals(1, scheduler.getCancelledCount());
+        }
+    }
+
+    @Test
+    public void requestSubmittedAfterCancellationStartsAfresh() throws Exception {
+        Future<String> cancelled = scheduler.submit("shared",
+                ArticleRequestScheduler.PRIORITY_VISIBLE,
+                simulatedRequest(BACKGROUND_WORK_MILLIS, "cancelled"));
+        scheduler.cancel(cancelled);
+
+        Future<String> fresh = scheduler.submit("shared", ArticleRequestScheduler.PRIORITY_VISIBLE,
+                simulatedRequest(VISIBLE_WORK_MILLIS, "fresh"));
+        assertNotSame(cancelled, fresh);
+        assertEquals("fresh", fresh.get(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Waits until the given number of workers are running requests.
+     */
+    private void awaitActiveCount(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (scheduler.getActiveCount() < count) {
+            assertTrue("workers never became busy", System.nanoTime() < deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    /**
+     * @return request busy for the given duration which, like a real download, stops early
+     * when its token is cancelled
+     */
+    private static ArticleRequestScheduler.Request<String> simulatedRequest(
+            final long durationMillis, final String result) {
+        return new ArticleRequestScheduler.Request<String>() {
+            @Override
+            public String execute(CancellationToken token) throws Exception {
+                long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+                while (System.nanoTime() < end) {
+                    if (token.isCancelled()) {
+                        throw new IOException("aborted");
+                    }
+                    Thread.sleep(2);
+                }
+                return result;
+            }
+        };
+    }
+
+    /**
+     * @return request waiting for the given latch which, like a real download, stops early
+     * when its token is cancelled
+     */
+    private static ArticleRequestScheduler.Request<String> blockingRequest(
+            final CountDownLatch release, final String result) {
+        return new ArticleRequestScheduler.Request<String>() {
+            @Override
+            public String execute(CancellationToken token) throws Exception {
+                while (!release.await(2, TimeUnit.MILLISECONDS)) {
+                    if (token.isCancelled()) {
+                        throw new IOException("aborted");
+                    }
+                }
+                return result;
+            }
+        };
+    }
+
+    /**
+     * @return request adding its name to the given list when it runs
+     */
+    private static ArticleRequestScheduler.Request<String> recordingRequest(
+            final String name, final List<String> completionOrder) {
+        return new ArticleRequestScheduler.Request<String>() {
+            @Override
+            public String execute(CancellationToken token) {
+                completionOrder.add(name);
+                return name;
+            }
+        };
+    }
+}
@@ -0,0 +1,64 @@
+package udacityscholarship.rada.raul.newsapp;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of {@link LongHashSet}.
+ */
+public class LongHashSetTest {
+
+    @Test
+    public void addedValuesAreContainedOnce() {
+        LongHashSet set = new LongHashSet(4);
+        assertTrue(set.add(42));
+        assertTrue(set.add(-7));
+        assertFalse(set.add(42));
+
+        assertTrue(set.contains(42));
+        assertTrue(set.contains(-7));
+        assertFalse(set.contains(43));
+        assertEquals(2, set.size());
+    }
+
+    @Test
+    public void growsPastItsExpectedSize() {
+        LongHashSet set = new LongHashSet(4);
+        for (long value = 1; value <= 10000; value++) {
+            assertTrue(set.add(value * 0x9E3779B9L));
+        }
+
+        assertEquals(10000, set.size());
+        for (long value = 1; value <= 10000; value++) {
+            assertTrue(set.contains(value * 0x9E3779B9L));
+        }
+        assertFalse(set.contains(10001 * 0x9E3779B9L));
+    }
+
+    @Test
+    public void toArrayReturnsEveryValue() {
+        LongHashSet set = new LongHashSet(0);
+        set.add(3);
+        set.add(1);
+        set.add(Long.MIN_VALUE);
+
+        long[] values = set.toArray();
+        Arrays.sort(values);
+        assertArrayEquals(new long[]{Long.MIN_VALUE, 1, 3}, values);
+    }
+
+    @Test
+    public void zeroIsNeverContained() {
+        LongHashSet set = new LongHashSet(4);
+        assertFalse(set.contains(0));
+        try {
+            set.add(0);
+            fail("0 was stored");
+        } catch (IllegalArgumentException expected) {
+            assertEquals(0, set.size());
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package udacityscholarship.rada.raul.newsapp;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of {@link ReadHistory}, using a temporary file as storage.
+ */
+public class ReadHistoryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void articlesAreUnreadUntilLoaded() throws IOException {
+        ReadHistory history = new ReadHistory(historyFile(), 100);
+        history.markRead("https://example.com/a");
+        assertFalse(history.isRead("https://example.com/a"));
+
+        history.load();
+        assertTrue(history.isRead("https://example.com/a"));
+        assertFalse(history.isRead("https://example.com/b"));
+    }
+
+    @Test
+    public void oldestArticlesAreForgottenFirst() throws IOException {
+        // two generations of two articles each
+        ReadHistory history = new ReadHistory(historyFile(), 4);
+        history.load();
+        for (String name : new String[]{"a", "b", "c", "d", "e"}) {
+            history.markRead("https://example.com/" + name);
+        }
+
+        assertFalse(history.isRead("https://example.com/a"));
+        assertFalse(history.isRead("https://example.com/b"));
+        assertTrue(history.isRead("https://example.com/c"));
+        assertTrue(history.isRead("https://example.com/d"));
+        assertTrue(history.isRead("https://example.com/e"));
+        assertEquals(3, history.size());
+    }
+
+    @Test
+    public void historySurvivesSaveAndLoad() throws IOException {
+        File file = historyFile();
+        ReadHistory history = new ReadHistory(file, 1000);
+        history.load();
+        for (int i = 0; i < 700; i++) {
+            history.markRead("https://example.com/" + i);
+        }
+        history.save();
+
+        ReadHistory reloaded = new ReadHistory(file, 1000);
+        reloaded.markRead("https://example.com/new");
+        reloaded.load();
+        for (int i = 0; i < 700; i++) {
+            assertTrue(reloaded.isRead("https://example.com/" + i));
+        }
+        assertTrue(reloaded.isRead("https://example.com/new"));
+        assertFalse(reloaded.isRead("https://example.com/other"));
+        assertEquals(701, reloaded.size());
+    }
+
+    @Test
+    public void damagedFileIsDropped() throws IOException {
+        File file = historyFile();
+        FileOutputStream output = new FileOutputStream(file);
+        output.write(new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9});
+        output.close();
+
+        ReadHistory history = new ReadHistory(file, 100);
+        history.load();
+        assertTrue(history.isLoaded());
+        assertEquals(0, history.size());
+    }
+
+    @Test
+    public void unchangedHistoryIsNotWritten() throws IOException {
+        File file = historyFile();
+        ReadHistory history = new ReadHistory(file, 100);
+        history.load();
+        history.save();
+        assertFalse(file.exists());
+    }
+
+    /**
+     * @return path of a history file which does not exist yet
+     */
+    private File historyFile() {
+        return new File(folder.getRoot(), "read_history.bin");
+    }
+}
@@ -0,0 +1,520 @@
+package udacityscholarship.rada.raul.newsapp.ingester;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.Charset;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import udacityscholarship.rada.raul.newsapp.ApiRateLimiter;
+import udacityscholarship.rada.raul.newsapp.Article;
+import udacityscholarship.rada.raul.newsapp.ArticleJsonParser;
+import udacityscholarship.rada.raul.newsapp.ArticlePage;
+import udacityscholarship.rada.raul.newsapp.CancellationToken;
+
+/**
+ * Command-line tool downloading every Guardian article of a date range to a newline-delimited
+ * JSON file, one article per line, for offline analysis.
+ * The range is split into windows of a few days, and the pages of all windows are fetched in
+ * parallel by a fixed number of workers, every request taking a token from a shared
+ * {@link ApiRateLimiter} first. Each page is parsed by the same {@link ArticleJsonParser} as the
+ * app, appended to the output and then recorded in an {@link IngestCheckpoint}, so an interrupted
+ * run started again with the same arguments resumes where it stopped. Pages in flight when a run
+ * stops may be written twice; consumers should de-duplicate by url.
+ */
+public final class ArchiveIngester {
+
+    /**
+     * default base URL of the Guardian search endpoint
+     */
+    private static final String GUARDIAN_REQUEST_URL = "https://content.guardianapis.com/search";
+
+    /**
+     * largest page size accepted by the Guardian API
+     */
+    private static final int MAX_PAGE_SIZE = 200;
+
+    /**
+     * number of attempts made for a page before giving up on it
+     */
+    private static final int MAX_ATTEMPTS = 5;
+
+    /**
+     * pause before the second attempt of a page, doubled for each further attempt
+     */
+    private static final long RETRY_DELAY_MILLIS = 2000;
+
+    /**
+     * constant value for identifying a connection timeout
+     */
+    private static final int CONNECTION_TIMEOUT = 15000;
+
+    /**
+     * constant value for identifying a read timeout
+     */
+    private static final int READ_TIMEOUT = 30000;
+
+    /**
+     * usage printed when the arguments are invalid
+     */
+    private static final String USAGE = "Usage: ArchiveIngester --from yyyy-MM-dd --to yyyy-MM-dd"
+            + " --out FILE [--api-key KEY] [--checkpoint FILE] [--window-days N]"
+            + " [--concurrency N] [--page-size N] [--section NAME] [--query TEXT]"
+            + " [--rate REQUESTS_PER_SECOND] [--daily-limit N] [--endpoint URL]\n"
+            + "The API key may also be given in the GUARDIAN_API_KEY environment variable.";
+
+    /**
+     * base URL of the search endpoint
+     */
+    private final String endpoint;
+
+    /**
+     * Guardian API key
+     */
+    private final String apiKey;
+
+    /**
+     * section filter, or null
+     */
+    private final String section;
+
+    /**
+     * search terms, or null
+     */
+    private final String query;
+
+    /**
+     * number of articles requested per page
+     */
+    private final int pageSize;
+
+    /**
+     * limiter shared by all workers
+     */
+    private final ApiRateLimiter rateLimiter;
+
+    /**
+     * number of pages fetched at the same time
+     */
+    private final int concurrency;
+
+    /**
+     * workers fetching the pages
+     */
+    private final ExecutorService workers;
+
+    /**
+     * writer appending to the output file, guarded by itself
+     */
+    private final Writer output;
+
+    /**
+     * record of the pages already written
+     */
+    private final IngestCheckpoint checkpoint;
+
+    /**
+     * set once the daily quota is exhausted, so no further request is started
+     */
+    private final AtomicBoolean stopped = new AtomicBoolean();
+
+    /**
+     * number of pages written by this run
+     */
+    private final AtomicInteger writtenPages = new AtomicInteger();
+
+    /**
+     * number of articles written by this run
+     */
+    private final AtomicInteger writtenArticles = new AtomicInteger();
+
+    /**
+     * number of pages given up after {@link #MAX_ATTEMPTS} attempts
+     */
+    private final AtomicInteger failedPages = new AtomicInteger();
+
+    /**
+     * {@link ArchiveIngester} constructor
+     *
+     * @param endpoint    base URL of the search endpoint
+     * @param apiKey      Guardian API key
+     * @param section     section filter, or null
+     * @param query       search terms, or null
+     * @param pageSize    number of articles requested per page
+     * @param concurrency number of pages fetched at the same time
+     * @param rateLimiter limiter shared by all workers
+     * @param outputFile  newline-delimited JSON file the articles are appended to
+     * @param checkpoint  record of the pages already written
+     * @throws IOException if the output file cannot be opened
+     */
+    ArchiveIngester(String endpoint, String apiKey, String section, String query, int pageSize,
+                    int concurrency, ApiRateLimiter rateLimiter, File outputFile,
+                    IngestCheckpoint checkpoint)
+            throws IOException {
+        this.endpoint = endpoint;
+        this.apiKey = apiKey;
+        this.section = section;
+        this.query = query;
+        this.pageSize = pageSize;
+        this.rateLimiter = rateLimiter;
+        this.concurrency = concurrency;
+        this.workers = Executors.newFixedThreadPool(concurrency);
+        // the articles of a page cut short by a crash were not checkpointed and are fetched again
+        IngestCheckpoint.truncatePartialLine(outputFile);
+        this.output = new OutputStreamWriter(new FileOutputStream(outputFile, true),
+                Charset.forName("UTF-8"));
+        this.checkpoint = checkpoint;
+    }
+
+    /**
+     * Runs the ingester with the options described by {@link #USAGE}, exiting with status 0 once
+     * every page is written, 1 if the run should be resumed later and 2 on invalid arguments.
+     */
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        if (options == null) {
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+
+        String apiKey = options.containsKey("api-key") ? options.get("api-key")
+                : System.getenv("GUARDIAN_API_KEY");
+        Date from = parseDay(options.get("from"));
+        Date to = parseDay(options.get("to"));
+        String outputPath = options.get("out");
+        if (apiKey == null || from == null || to == null || outputPath == null
+                || from.after(to)) {
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+        int windowDays;
+        int concurrency;
+        int pageSize;
+        double rate;
+        int dailyLimit;
+        try {
+            windowDays = intOption(options, "window-days", 7);
+            concurrency = intOption(options, "concurrency", 4);
+            pageSize = Math.min(MAX_PAGE_SIZE, intOption(options, "page-size", MAX_PAGE_SIZE));
+            rate = options.containsKey("rate") ? Double.parseDouble(options.get("rate")) : 1.0;
+            dailyLimit = intOption(options, "daily-limit", 500);
+        } catch (NumberFormatException e) {
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+        if (!(rate > 0) || Double.isInfinite(rate)) {
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+        String checkpointPath = options.containsKey("checkpoint") ? options.get("checkpoint")
+                : outputPath + ".checkpoint";
+
+        IngestCheckpoint checkpoint = new IngestCheckpoint(new File(checkpointPath));
+        String endpoint = options.containsKey("endpoint") ? options.get("endpoint")
+                : GUARDIAN_REQUEST_URL;
+        ArchiveIngester ingester = new ArchiveIngester(endpoint, apiKey,
+                options.get("section"), options.get("query"), pageSize, concurrency,
+                new ApiRateLimiter(rate, concurrency, dailyLimit), new File(outputPath),
+                checkpoint);
+        boolean complete = ingester.ingest(splitIntoWindows(from, to, windowDays));
+        System.exit(complete ? 0 : 1);
+    }
+
+    /**
+     * Fetches every page of the given windows not recorded in the checkpoint, then closes the
+     * output and the checkpoint.
+     *
+     * @param windows start and end day of each window, formatted as yyyy-MM-dd
+     * @return true if every page has been written, false if the run should be resumed later
+     * @throws IOException          if the output cannot be closed
+     * @throws InterruptedException if interrupted while waiting for the workers
+     */
+    boolean ingest(List<String[]> windows) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        // workers pull pages one at a time, so nothing piles up however many pages there are
+        final PageQueue pages = new PageQueue(windows, checkpoint);
+        for (int i = 0; i < concurrency; i++) {
+            workers.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        fetchPages(pages);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+        }
+        workers.shutdown();
+        while (!workers.awaitTermination(1, TimeUnit.MINUTES)) {
+            // keep waiting, a window may have many pages left
+        }
+        synchronized (output) {
+            output.close();
+        }
+        checkpoint.close();
+
+        System.err.println("Wrote " + writtenArticles.get() + " articles from "
+                + writtenPages.get() + " pages in "
+                + TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) + "s, "
+                + failedPages.get() + " pages failed, " + rateLimiter.getRemainingDailyQuota()
+                + " requests left today");
+        if (stopped.get()) {
+            System.err.println("Daily API quota exhausted, run again tomorrow to resume");
+        }
+        return failedPages.get() == 0 && !stopped.get();
+    }
+
+    /**
+     * Fetches the pages handed out by the queue until none is left or the daily quota is
+     * exhausted.
+     *
+     * @throws InterruptedException if interrupted while waiting for a page
+     */
+    private void fetchPages(PageQueue pages) throws InterruptedException {
+        PageQueue.PageRequest request;
+        while ((request = pages.take()) != null) {
+            int windowPages = -1;
+            try {
+                windowPages = fetchPage(request.from, request.to, request.page);
+            } catch (Exception e) {
+                failedPages.incrementAndGet();
+                System.err.println("Giving up on " + request.from + ".." + request.to + " page "
+                        + request.page + ": " + e);
+            } finally {
+                pages.finish(request, windowPages);
+            }
+            if (stopped.get()) {
+                pages.stop();
+            }
+        }
+    }
+
+    /**
+     * Downloads, parses and writes a page, retrying transient failures, then records it in the
+     * checkpoint.
+     *
+     * @return number of pages of the window, or -1 if the daily quota is exhausted
+     */
+    private int fetchPage(String from, String to, int page) throws Exception {
+        ArticlePage articlePage = null;
+        for (int attempt = 1; articlePage == null; attempt++) {
+            if (stopped.get()) {
+                return -1;
+            }
+            if (!rateLimiter.acquire()) {
+                stopped.set(true);
+                return -1;
+            }
+            try {
+                String json = download(buildUrl(from, to, page));
+                articlePage = ArticleJsonParser.parsePage(json, new CancellationToken());
+            } catch (IOException | JSONException e) {
+                if (attempt >= MAX_ATTEMPTS) {
+                    throw e;
+                }
+                Thread.sleep(RETRY_DELAY_MILLIS << (attempt - 1));
+            }
+        }
+
+        // an empty window reports 0 pages, but its single empty page is still recorded
+        int pages = Math.max(1, articlePage.getPages());
+        if (!checkpoint.isCompleted(from, to, page)) {
+            write(articlePage.getArticles());
+            checkpoint.markCompleted(from, to, page, pages);
+            writtenPages.incrementAndGet();
+        }
+        return pages;
+    }
+
+    /**
+     * Appends the given articles to the output, one JSON object per line, and flushes them.
+     */
+    private void write(List<Article> articles) throws IOException {
+        StringBuilder lines = new StringBuilder();
+        SimpleDateFormat isoFormat = utcFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
+        try {
+            for (Article article : articles) {
+                JSONObject line = new JSONObject();
+                line.put("url", article.getArticleUrl());
+                line.put("title", article.getArticleTitle());
+                line.put("section", article.getArticleSection());
+                line.put("author", article.getArticleAuthor());
+                long publicationTime = article.getArticlePublicationTime();
+                if (publicationTime > 0) {
+                    line.put("publishedAt", isoFormat.format(new Date(publicationTime)));
+                    line.put("publishedAtMillis", publicationTime);
+                }
+                lines.append(line.toString()).append('\n');
+            }
+        } catch (JSONException e) {
+            throw new IOException("Cannot encode article", e);
+        }
+        synchronized (output) {
+            output.write(lines.toString());
+            output.flush();
+        }
+        writtenArticles.addAndGet(articles.size());
+    }
+
+    /**
+     * @return URL of a page of the articles published within the given days, oldest first so
+     * that pages stay stable while new articles are published
+     */
+    private String buildUrl(String from, String to, int page) throws UnsupportedEncodingException {
+        StringBuilder url = new StringBuilder(endpoint)
+                .append("?from-date=").append(from)
+                .append("&to-date=").append(to)
+                .append("&order-by=oldest")
+                .append("&show-tags=contributor")
+                .append("&page-size=").append(pageSize)
+                .append("&page=").append(page)
+                .append("&api-key=").append(URLEncoder.encode(apiKey, "UTF-8"));
+        if (section != null) {
+            url.append("&section=").append(URLEncoder.encode(section, "UTF-8"));
+        }
+        if (query != null) {
+            url.append("&q=").append(URLEncoder.encode(query, "UTF-8"));
+        }
+        return url.toString();
+    }
+
+    /**
+     * Makes an HTTP request to the given URL, reporting the rate-limit headers of the response
+     * to the limiter.
+     *
+     * @return body of the response
+     * @throws IOException if the request fails or the response is not 200 OK
+     */
+    private String download(String stringUrl) throws IOException {
+        HttpURLConnection urlConnection = (HttpURLConnection) new URL(stringUrl).openConnection();
+        try {
+            urlConnection.setReadTimeout(READ_TIMEOUT);
+            urlConnection.setConnectTimeout(CONNECTION_TIMEOUT);
+            urlConnection.setRequestMethod("GET");
+            int responseCode = urlConnection.getResponseCode();
+            rateLimiter.onResponse(responseCode,
+                    urlConnection.getHeaderField(ApiRateLimiter.HEADER_LIMIT_DAY),
+                    urlConnection.getHeaderField(ApiRateLimiter.HEADER_REMAINING_DAY),
+                    urlConnection.getHeaderField(ApiRateLimiter.HEADER_REMAINING_MINUTE),
+                    urlConnection.getHeaderField(ApiRateLimiter.HEADER_RETRY_AFTER));
+            if (responseCode != HttpURLConnection.HTTP_OK) {
+                throw new IOException("HTTP " + responseCode + " "
+                        + urlConnection.getResponseMessage());
+            }
+            InputStream inputStream = urlConnection.getInputStream();
+            try {
+                BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(inputStream, Charset.forName("UTF-8")));
+                StringBuilder body = new StringBuilder();
+                char[] buffer = new char[8192];
+                int read;
+                while ((read = reader.read(buffer)) != -1) {
+                    body.append(buffer, 0, read);
+                }
+                return body.toString();
+            } finally {
+                inputStream.close();
+            }
+        } finally {
+            urlConnection.disconnect();
+        }
+    }
+
+    /**
+     * Splits an inclusive range of days into consecutive windows of at most the given length.
+     *
+     * @return start and end day of each window, formatted as yyyy-MM-dd
+     */
+    static List<String[]> splitIntoWindows(Date from, Date to, int windowDays) {
+        SimpleDateFormat dayFormat = utcFormat("yyyy-MM-dd");
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        calendar.setTime(from);
+        List<String[]> windows = new ArrayList<String[]>();
+        while (!calendar.getTime().after(to)) {
+            String windowStart = dayFormat.format(calendar.getTime());
+            calendar.add(Calendar.DAY_OF_MONTH, Math.max(1, windowDays) - 1);
+            Date windowEnd = calendar.getTime().after(to) ? to : calendar.getTime();
+            windows.add(new String[]{windowStart, dayFormat.format(windowEnd)});
+            calendar.setTime(windowEnd);
+            calendar.add(Calendar.DAY_OF_MONTH, 1);
+        }
+        return windows;
+    }
+
+    /**
+     * @return options given as "--name value" pairs, by name, or null if the arguments are
+     * malformed
+     */
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<String, String>();
+        for (int i = 0; i < args.length; i += 2) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) {
+                return null;
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        return options;
+    }
+
+    /**
+     * @return positive integer value of an option, or the default value if it is missing
+     * @throws NumberFormatException if the value is not an integer
+     */
+    private static int intOption(Map<String, String> options, String name, int defaultValue) {
+        String value = options.get(name);
+        return value == null ? defaultValue : Math.max(1, Integer.parseInt(value));
+    }
+
+    /**
+     * @return the given yyyy-MM-dd day at midnight UTC, or null if it cannot be parsed
+     */
+    private static Date parseDay(String day) {
+        if (day == null) {
+            return null;
+        }
+        try {
+            return utcFormat("yyyy-MM-dd").parse(day);
+        } catch (ParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return date format with the given pattern in UTC
+     */
+    private static SimpleDateFormat utcFormat(String pattern) {
+        SimpleDateFormat format = new SimpleDateFormat(pattern);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format;
+    }
+}
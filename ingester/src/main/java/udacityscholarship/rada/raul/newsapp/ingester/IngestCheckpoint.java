@@ -0,0 +1,167 @@
+package udacityscholarship.rada.raul.newsapp.ingester;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Append-only record of the pages already written by the {@link ArchiveIngester}.
+ * Each line holds the window start date, the window end date, the page number and the number of
+ * pages of the window, separated by tabs. A page is recorded only after its articles have been
+ * flushed to the output, so a restarted run skips every recorded page and at worst writes the
+ * articles of the pages in flight when it stopped a second time.
+ * Class is thread-safe.
+ */
+final class IngestCheckpoint {
+
+    /**
+     * separator of the fields of a checkpoint line
+     */
+    private static final String SEPARATOR = "\t";
+
+    /**
+     * window and page keys of the recorded pages
+     */
+    private final Set<String> completedPages = new HashSet<String>();
+
+    /**
+     * number of pages of each window seen so far, by window key
+     */
+    private final Map<String, Integer> windowPageCounts = new HashMap<String, Integer>();
+
+    /**
+     * writer appending to the checkpoint file
+     */
+    private final Writer writer;
+
+    /**
+     * Reads the pages recorded by previous runs and opens the file for appending.
+     *
+     * @param file checkpoint file, created if missing
+     * @throws IOException if the file cannot be read or opened
+     */
+    IngestCheckpoint(File file) throws IOException {
+        // a line cut short by a crash may still split into four fields, e.g. with a truncated
+        // page count, so it is dropped before anything is read
+        truncatePartialLine(file);
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(file),
+                    Charset.forName("UTF-8")));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split(SEPARATOR);
+                if (fields.length != 4) {
+                    // not a checkpoint line, the page is fetched again
+                    continue;
+                }
+                try {
+                    int page = Integer.parseInt(fields[2]);
+                    int pages = Integer.parseInt(fields[3]);
+                    String window = windowKey(fields[0], fields[1]);
+                    completedPages.add(pageKey(window, page));
+                    windowPageCounts.put(window, pages);
+                } catch (NumberFormatException e) {
+                    // same as a line with missing fields
+                }
+            }
+        } catch (FileNotFoundException e) {
+            // first run, nothing recorded yet
+        } finally {
+            if (reader != null) {
+                reader.close();
+            }
+        }
+        writer = new OutputStreamWriter(new FileOutputStream(file, true), Charset.forName("UTF-8"));
+    }
+
+    /**
+     * Drops the last line of a file if it lacks its line break, i.e. it was cut short by a
+     * crash, so that lines appended afterwards do not merge with it.
+     *
+     * @throws IOException if the file cannot be read or truncated
+     */
+    static void truncatePartialLine(File file) throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            long length = randomAccessFile.length();
+            while (length > 0) {
+                randomAccessFile.seek(length - 1);
+                if (randomAccessFile.read() == '\n') {
+                    break;
+                }
+                length--;
+            }
+            randomAccessFile.setLength(length);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * @return true if the given page of the window was recorded
+     */
+    synchronized boolean isCompleted(String from, String to, int page) {
+        return completedPages.contains(pageKey(windowKey(from, to), page));
+    }
+
+    /**
+     * @return number of pages of the window recorded by a previous run, or -1 if unknown
+     */
+    synchronized int getPageCount(String from, String to) {
+        Integer pages = windowPageCounts.get(windowKey(from, to));
+        return pages == null ? -1 : pages;
+    }
+
+    /**
+     * Records that the given page of the window has been written, flushing the record.
+     *
+     * @throws IOException if the record cannot be written
+     */
+    synchronized void markCompleted(String from, String to, int page, int pages)
+            throws IOException {
+        String window = windowKey(from, to);
+        writer.write(from + SEPARATOR + to + SEPARATOR + page + SEPARATOR + pages + "\n");
+        writer.flush();
+        completedPages.add(pageKey(window, page));
+        windowPageCounts.put(window, pages);
+    }
+
+    /**
+     * Closes the checkpoint file.
+     *
+     * @throws IOException if the file cannot be closed
+     */
+    synchronized void close() throws IOException {
+        writer.close();
+    }
+
+    /**
+     * @return key identifying a date window
+     */
+    private static String windowKey(String from, String to) {
+        return from + SEPARATOR + to;
+    }
+
+    /**
+     * @return key identifying a page of a date window
+     */
+    private static String pageKey(String window, int page) {
+        return window + SEPARATOR + page;
+    }
+}
@@ -0,0 +1,196 @@
+package udacityscholarship.rada.raul.newsapp.ingester;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Hands out the pages of a list of date windows to the workers of the {@link ArchiveIngester},
+ * skipping the pages recorded in the {@link IngestCheckpoint}.
+ * Pages are produced lazily: a window is only opened when no page of an open window is left,
+ * and the pages of an open window are kept as a range, so memory stays proportional to the
+ * number of workers however long the date range is. The pages after the first one of a window
+ * whose size is unknown are only handed out once its first page has been fetched.
+ * Class is thread-safe.
+ */
+final class PageQueue {
+
+    /**
+     * A page to fetch.
+     */
+    static final class PageRequest {
+
+        /**
+         * first day of the window, formatted as yyyy-MM-dd
+         */
+        final String from;
+
+        /**
+         * last day of the window, formatted as yyyy-MM-dd
+         */
+        final String to;
+
+        /**
+         * page number, starting at 1
+         */
+        final int page;
+
+        /**
+         * number of pages of the window, or -1 if it is only known once this page is read
+         */
+        final int knownPages;
+
+        PageRequest(String from, String to, int page, int knownPages) {
+            this.from = from;
+            this.to = to;
+            this.page = page;
+            this.knownPages = knownPages;
+        }
+    }
+
+    /**
+     * The pages of an open window still to hand out.
+     */
+    private static final class WindowPages {
+
+        /**
+         * first day of the window
+         */
+        final String from;
+
+        /**
+         * last day of the window
+         */
+        final String to;
+
+        /**
+         * number of pages of the window
+         */
+        final int pages;
+
+        /**
+         * next page to hand out
+         */
+        int nextPage;
+
+        WindowPages(String from, String to, int nextPage, int pages) {
+            this.from = from;
+            this.to = to;
+            this.nextPage = nextPage;
+            this.pages = pages;
+        }
+    }
+
+    /**
+     * record of the pages already written
+     */
+    private final IngestCheckpoint checkpoint;
+
+    /**
+     * windows not opened yet, guarded by this
+     */
+    private final Iterator<String[]> windows;
+
+    /**
+     * open windows with pages left, guarded by this
+     */
+    private final Deque<WindowPages> openWindows = new ArrayDeque<WindowPages>();
+
+    /**
+     * number of pages handed out and not finished yet, guarded by this
+     */
+    private int pagesInFlight;
+
+    /**
+     * true once no further page should be handed out, guarded by this
+     */
+    private boolean stopped;
+
+    /**
+     * {@link PageQueue} constructor
+     *
+     * @param windows    start and end day of each window, formatted as yyyy-MM-dd
+     * @param checkpoint record of the pages already written
+     */
+    PageQueue(List<String[]> windows, IngestCheckpoint checkpoint) {
+        this.windows = windows.iterator();
+        this.checkpoint = checkpoint;
+    }
+
+    /**
+     * Hands out the next page to fetch, waiting while only pages in flight may still add pages.
+     * Every page handed out must be passed to {@link #finish} once fetched or given up.
+     *
+     * @return next page to fetch, or null once every page has been handed out and finished, or
+     * the queue has been stopped
+     * @throws InterruptedException if interrupted while waiting
+     */
+    synchronized PageRequest take() throws InterruptedException {
+        while (!stopped) {
+            PageRequest request = nextPage();
+            if (request != null) {
+                pagesInFlight++;
+                return request;
+            }
+            if (pagesInFlight == 0) {
+                return null;
+            }
+            wait();
+        }
+        return null;
+    }
+
+    /**
+     * Marks a page handed out by {@link #take} as finished.
+     *
+     * @param request page handed out
+     * @param pages   number of pages of its window, or -1 if the page could not be read
+     */
+    synchronized void finish(PageRequest request, int pages) {
+        if (request.knownPages < 0 && pages > 1) {
+            openWindows.addFirst(new WindowPages(request.from, request.to, 2, pages));
+        }
+        pagesInFlight--;
+        notifyAll();
+    }
+
+    /**
+     * Stops handing out pages, e.g. once the daily quota is exhausted.
+     */
+    synchronized void stop() {
+        stopped = true;
+        notifyAll();
+    }
+
+    /**
+     * @return next page not yet written, taken from the open windows first, or null if only
+     * pages in flight may still add pages
+     */
+    private PageRequest nextPage() {
+        while (true) {
+            WindowPages window = openWindows.peekFirst();
+            if (window != null) {
+                if (window.nextPage > window.pages) {
+                    openWindows.removeFirst();
+                    continue;
+                }
+                int page = window.nextPage++;
+                if (!checkpoint.isCompleted(window.from, window.to, page)) {
+                    return new PageRequest(window.from, window.to, page, window.pages);
+                }
+                continue;
+            }
+            if (!windows.hasNext()) {
+                return null;
+            }
+            String[] next = windows.next();
+            int knownPages = checkpoint.getPageCount(next[0], next[1]);
+            if (knownPages < 0) {
+                // page 1 tells how many pages the window has; the others follow once it lands
+                return new PageRequest(next[0], next[1], 1, knownPages);
+            }
+            openWindows.addFirst(new WindowPages(next[0], next[1], 1, knownPages));
+        }
+    }
+}
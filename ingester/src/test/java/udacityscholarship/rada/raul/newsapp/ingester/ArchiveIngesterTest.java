@@ -0,0 +1,65 @@
+package udacityscholarship.rada.raul.newsapp.ingester;
+
+import org.junit.Test;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the date windows of {@link ArchiveIngester}.
+ */
+public class ArchiveIngesterTest {
+
+    @Test
+    public void rangeIsSplitIntoConsecutiveWindows() throws ParseException {
+        List<String[]> windows = ArchiveIngester.splitIntoWindows(
+                day("2018-06-01"), day("2018-06-10"), 4);
+        assertEquals(3, windows.size());
+        assertArrayEquals(new String[]{"2018-06-01", "2018-06-04"}, windows.get(0));
+        assertArrayEquals(new String[]{"2018-06-05", "2018-06-08"}, windows.get(1));
+        assertArrayEquals(new String[]{"2018-06-09", "2018-06-10"}, windows.get(2));
+    }
+
+    @Test
+    public void windowsCrossMonthAndYearEnds() throws ParseException {
+        List<String[]> windows = ArchiveIngester.splitIntoWindows(
+                day("2017-12-30"), day("2018-03-02"), 31);
+        assertEquals(3, windows.size());
+        assertArrayEquals(new String[]{"2017-12-30", "2018-01-29"}, windows.get(0));
+        assertArrayEquals(new String[]{"2018-01-30", "2018-03-01"}, windows.get(1));
+        assertArrayEquals(new String[]{"2018-03-02", "2018-03-02"}, windows.get(2));
+    }
+
+    @Test
+    public void singleDayRangeIsOneWindow() throws ParseException {
+        List<String[]> windows = ArchiveIngester.splitIntoWindows(
+                day("2018-06-01"), day("2018-06-01"), 7);
+        assertEquals(1, windows.size());
+        assertArrayEquals(new String[]{"2018-06-01", "2018-06-01"}, windows.get(0));
+    }
+
+    @Test
+    public void nonPositiveWindowLengthMeansOneDay() throws ParseException {
+        List<String[]> windows = ArchiveIngester.splitIntoWindows(
+                day("2018-06-01"), day("2018-06-03"), 0);
+        assertEquals(3, windows.size());
+        assertArrayEquals(new String[]{"2018-06-03", "2018-06-03"}, windows.get(2));
+    }
+
+    @Test
+    public void reversedRangeHasNoWindows() throws ParseException {
+        assertTrue(ArchiveIngester.splitIntoWindows(
+                day("2018-06-02"), day("2018-06-01"), 7).isEmpty());
+    }
+
+    private static Date day(String day) throws ParseException {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd");
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format.parse(day);
+    }
+}
@@ -0,0 +1,95 @@
+package udacityscholarship.rada.raul.newsapp.ingester;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of {@link IngestCheckpoint}, using a temporary checkpoint file.
+ */
+public class IngestCheckpointTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void recordedPagesSurviveARestart() throws IOException {
+        File file = new File(folder.getRoot(), "checkpoint");
+        IngestCheckpoint checkpoint = new IngestCheckpoint(file);
+        assertFalse(checkpoint.isCompleted("2018-06-01", "2018-06-07", 1));
+        assertEquals(-1, checkpoint.getPageCount("2018-06-01", "2018-06-07"));
+        checkpoint.markCompleted("2018-06-01", "2018-06-07", 1, 3);
+        checkpoint.markCompleted("2018-06-01", "2018-06-07", 3, 3);
+        checkpoint.close();
+
+        checkpoint = new IngestCheckpoint(file);
+        assertTrue(checkpoint.isCompleted("2018-06-01", "2018-06-07", 1));
+        assertFalse(checkpoint.isCompleted("2018-06-01", "2018-06-07", 2));
+        assertTrue(checkpoint.isCompleted("2018-06-01", "2018-06-07", 3));
+        assertFalse(checkpoint.isCompleted("2018-06-08", "2018-06-14", 1));
+        assertEquals(3, checkpoint.getPageCount("2018-06-01", "2018-06-07"));
+        checkpoint.close();
+    }
+
+    @Test
+    public void lineCutShortIsIgnoredEvenWithAllItsFields() throws IOException {
+        // the page count of the second line lost its last digit
+        File file = write("2018-06-01\t2018-06-07\t1\t12\n2018-06-01\t2018-06-07\t2\t1");
+        IngestCheckpoint checkpoint = new IngestCheckpoint(file);
+        assertTrue(checkpoint.isCompleted("2018-06-01", "2018-06-07", 1));
+        assertFalse(checkpoint.isCompleted("2018-06-01", "2018-06-07", 2));
+        assertEquals(12, checkpoint.getPageCount("2018-06-01", "2018-06-07"));
+
+        checkpoint.markCompleted("2018-06-01", "2018-06-07", 2, 12);
+        checkpoint.close();
+        checkpoint = new IngestCheckpoint(file);
+        assertTrue(checkpoint.isCompleted("2018-06-01", "2018-06-07", 2));
+        checkpoint.close();
+    }
+
+    @Test
+    public void malformedLinesAreIgnored() throws IOException {
+        File file = write("2018-06-01\t2018-06-07\t1\n2018-06-01\t2018-06-07\tx\t3\n"
+                + "2018-06-01\t2018-06-07\t2\t3\n");
+        IngestCheckpoint checkpoint = new IngestCheckpoint(file);
+        assertFalse(checkpoint.isCompleted("2018-06-01", "2018-06-07", 1));
+        assertTrue(checkpoint.isCompleted("2018-06-01", "2018-06-07", 2));
+        checkpoint.close();
+    }
+
+    @Test
+    public void truncatePartialLineKeepsCompleteLines() throws IOException {
+        File file = write("one\ntwo\nthr");
+        IngestCheckpoint.truncatePartialLine(file);
+        assertEquals("one\ntwo\n".length(), file.length());
+
+        IngestCheckpoint.truncatePartialLine(file);
+        assertEquals("one\ntwo\n".length(), file.length());
+
+        file = write("partial");
+        IngestCheckpoint.truncatePartialLine(file);
+        assertEquals(0, file.length());
+
+        // a missing file is left missing
+        File missing = new File(folder.getRoot(), "missing");
+        IngestCheckpoint.truncatePartialLine(missing);
+        assertFalse(missing.exists());
+    }
+
+    private File write(String content) throws IOException {
+        File file = folder.newFile();
+        FileOutputStream outputStream = new FileOutputStream(file);
+        try {
+            outputStream.write(content.getBytes("UTF-8"));
+        } finally {
+            outputStream.close();
+        }
+        return file;
+    }
+}
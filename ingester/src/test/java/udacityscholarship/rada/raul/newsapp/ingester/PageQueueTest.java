@@ -0,0 +1,139 @@
+package udacityscholarship.rada.raul.newsapp.ingester;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of {@link PageQueue}, using a temporary checkpoint file.
+ */
+public class PageQueueTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void pagesAfterTheFirstFollowOnceItIsRead() throws Exception {
+        IngestCheckpoint checkpoint = new IngestCheckpoint(new File(folder.getRoot(), "cp"));
+        PageQueue queue = new PageQueue(window("2018-06-01", "2018-06-07"), checkpoint);
+
+        PageQueue.PageRequest first = queue.take();
+        assertEquals(1, first.page);
+        assertEquals(-1, first.knownPages);
+        queue.finish(first, 3);
+
+        PageQueue.PageRequest second = queue.take();
+        PageQueue.PageRequest third = queue.take();
+        assertEquals(2, second.page);
+        assertEquals(3, third.page);
+        assertEquals(3, third.knownPages);
+        queue.finish(second, 3);
+        queue.finish(third, 3);
+        assertNull(queue.take());
+        checkpoint.close();
+    }
+
+    @Test
+    public void takeWaitsWhileAPageInFlightMayAddPages() throws Exception {
+        IngestCheckpoint checkpoint = new IngestCheckpoint(new File(folder.getRoot(), "cp"));
+        final PageQueue queue = new PageQueue(window("2018-06-01", "2018-06-07"), checkpoint);
+        PageQueue.PageRequest first = queue.take();
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<PageQueue.PageRequest> next = executor.submit(
+                    new Callable<PageQueue.PageRequest>() {
+                        @Override
+                        public PageQueue.PageRequest call() throws InterruptedException {
+                            return queue.take();
+                        }
+                    });
+            try {
+                next.get(100, TimeUnit.MILLISECONDS);
+                fail("take returned before the first page was read");
+            } catch (TimeoutException expected) {
+                // still waiting for the page count
+            }
+            queue.finish(first, 2);
+            assertEquals(2, next.get(5, TimeUnit.SECONDS).page);
+        } finally {
+            executor.shutdownNow();
+        }
+        checkpoint.close();
+    }
+
+    @Test
+    public void recordedPagesAreSkipped() throws Exception {
+        File file = new File(folder.getRoot(), "cp");
+        IngestCheckpoint checkpoint = new IngestCheckpoint(file);
+        checkpoint.markCompleted("2018-06-01", "2018-06-07", 1, 3);
+        checkpoint.markCompleted("2018-06-01", "2018-06-07", 3, 3);
+        checkpoint.markCompleted("2018-06-08", "2018-06-14", 1, 1);
+
+        PageQueue queue = new PageQueue(Arrays.asList(
+                new String[]{"2018-06-01", "2018-06-07"},
+                new String[]{"2018-06-08", "2018-06-14"},
+                new String[]{"2018-06-15", "2018-06-21"}), checkpoint);
+        PageQueue.PageRequest missing = queue.take();
+        assertEquals("2018-06-01", missing.from);
+        assertEquals(2, missing.page);
+        assertEquals(3, missing.knownPages);
+        PageQueue.PageRequest unknown = queue.take();
+        assertEquals("2018-06-15", unknown.from);
+        assertEquals(1, unknown.page);
+        queue.finish(missing, 3);
+        queue.finish(unknown, 1);
+        assertNull(queue.take());
+        checkpoint.close();
+    }
+
+    @Test
+    public void failedFirstPageEndsItsWindow() throws IOException, InterruptedException {
+        IngestCheckpoint checkpoint = new IngestCheckpoint(new File(folder.getRoot(), "cp"));
+        PageQueue queue = new PageQueue(window("2018-06-01", "2018-06-07"), checkpoint);
+        queue.finish(queue.take(), -1);
+        assertNull(queue.take());
+        checkpoint.close();
+    }
+
+    @Test
+    public void stopWakesWaitingWorkers() throws Exception {
+        IngestCheckpoint checkpoint = new IngestCheckpoint(new File(folder.getRoot(), "cp"));
+        final PageQueue queue = new PageQueue(window("2018-06-01", "2018-06-07"), checkpoint);
+        queue.take();
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<PageQueue.PageRequest> next = executor.submit(
+                    new Callable<PageQueue.PageRequest>() {
+                        @Override
+                        public PageQueue.PageRequest call() throws InterruptedException {
+                            return queue.take();
+                        }
+                    });
+            queue.stop();
+            assertNull(next.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+        checkpoint.close();
+    }
+
+    private static List<String[]> window(String from, String to) {
+        return Collections.singletonList(new String[]{from, to});
+    }
+}